@@ -0,0 +1,70 @@
+package cl.veritrust.v1.Components;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.UrlResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copia de un archivo hacia un destino del kernel (/dev/null): el camino anterior
+ * (UrlResource + StreamUtils.copy con buffer en el heap) contra FileChannel.transferTo,
+ * que es lo que hace sendfile. Con -prof gc se ve la diferencia de asignaciones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescargaBenchmark {
+
+    @Param({"1048576", "20971520"})
+    public int bytes;
+
+    private Path archivo;
+    private final Path devNull = Path.of("/dev/null");
+
+    @Setup
+    public void setup() throws IOException {
+        archivo = Files.createTempFile("descarga-bench", ".pdf");
+        byte[] contenido = new byte[bytes];
+        new Random(42).nextBytes(contenido);
+        Files.write(archivo, contenido);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(archivo);
+    }
+
+    @Benchmark
+    public long copiaConBuffer() throws IOException {
+        UrlResource resource = new UrlResource(archivo.toUri());
+        try (InputStream in = resource.getInputStream(); OutputStream out = new FileOutputStream(devNull.toFile())) {
+            return StreamUtils.copy(in, out);
+        }
+    }
+
+    @Benchmark
+    public long transferTo() throws IOException {
+        try (FileChannel origen = FileChannel.open(archivo, StandardOpenOption.READ);
+             FileChannel destino = FileChannel.open(devNull, StandardOpenOption.WRITE)) {
+            long enviado = 0;
+            long largo = origen.size();
+            while (enviado < largo) {
+                enviado += origen.transferTo(enviado, largo - enviado, destino);
+            }
+            return enviado;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package cl.veritrust.v1.Components;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estampado de un PDF escaneado (una imagen JPEG distinta por página): el camino anterior
+ * (carga en el heap y save completo) contra archivo temporal + guardado incremental.
+ * Con -prof gc, gc.alloc.rate.norm muestra los bytes asignados por firma; el tamaño del
+ * original y del firmado se imprimen al inicio y al final de cada trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx512m"})
+public class EstampadoPdfBenchmark {
+
+    @Param({"10", "200"})
+    public int paginas;
+
+    private Path original;
+    private Path firmado;
+    private EstampadorPdf completo;
+    private EstampadorPdf incremental;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        original = Files.createTempFile("estampado-bench", ".pdf");
+        firmado = Files.createTempFile("estampado-bench-firmado", ".pdf");
+        completo = new EstampadorPdf(false, false, PlantillaSello.porDefecto());
+        incremental = new EstampadorPdf(true, true, PlantillaSello.porDefecto());
+
+        PdfSinteticos.escaneado(original, paginas, PdfSinteticos.ESCANEO_COMPLETO);
+        System.out.println("\nPDF original: " + paginas + " páginas, " + Files.size(original) + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.println("\nPDF firmado: " + Files.size(firmado) + " bytes");
+        Files.deleteIfExists(original);
+        Files.deleteIfExists(firmado);
+    }
+
+    @Benchmark
+    public void guardadoCompleto() throws IOException {
+        completo.estampar(original.toFile(), firmado.toFile());
+    }
+
+    @Benchmark
+    public void guardadoIncremental() throws IOException {
+        incremental.estampar(original.toFile(), firmado.toFile());
+    }
+}
@@ -0,0 +1,123 @@
+package cl.veritrust.v1.Components;
+
+import cl.veritrust.v1.Model.Documento;
+import cl.veritrust.v1.Service.FileStorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Pipeline de firma de FirmarDoc (prepararFirma: conversión + estampado + guardado del PDF
+ * firmado) sobre PDFs sintéticos de 1 a 1000 páginas, sólo texto o con una imagen escaneada
+ * por página. Con origen=docx la conversión es un stub que copia el PDF generado, así se mide
+ * el resto del pipeline sin depender de LibreOffice.
+ *
+ * <p>Throughput y SampleTime (p50/p99 en el JSON) en la misma corrida; con el perfil benchmark
+ * -prof gc agrega gc.alloc.rate.norm. No toca la base de datos: el documento no se persiste.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+public class FirmaPipelineBenchmark {
+
+    private static final String TIPO_DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    @Param({"1", "10", "100", "1000"})
+    public int paginas;
+
+    @Param({"texto", "imagenes"})
+    public String contenido;
+
+    @Param({"pdf", "docx"})
+    public String origen;
+
+    private Path uploadDir;
+    private Path pdfGenerado;
+    private FileStorageService fileStorageService;
+    private FirmarDoc firmarDoc;
+    private String nombreAlmacenado;
+    // firmas de la iteración en curso cuyos archivos hay que borrar al terminarla
+    private final List<Documento> firmados = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        uploadDir = Files.createTempDirectory("firma-bench");
+        pdfGenerado = Files.createTempFile("firma-bench", ".pdf");
+        if ("imagenes".equals(contenido)) {
+            PdfSinteticos.escaneado(pdfGenerado, paginas, PdfSinteticos.ESCANEO_LIVIANO);
+        } else {
+            PdfSinteticos.texto(pdfGenerado, paginas);
+        }
+
+        fileStorageService = new FileStorageService(uploadDir.toString(), new SimpleMeterRegistry());
+        if ("docx".equals(origen)) {
+            // el contenido da igual: el stub de conversión no lo lee
+            nombreAlmacenado = "plantilla.docx";
+            Files.write(fileStorageService.rutaNuevoArchivo(nombreAlmacenado), new byte[]{'P', 'K', 3, 4});
+        } else {
+            nombreAlmacenado = "original.pdf";
+            Files.copy(pdfGenerado, fileStorageService.rutaNuevoArchivo(nombreAlmacenado));
+        }
+
+        ConvertidorDocumentos stub = (docx, destino) ->
+                Files.copy(pdfGenerado, destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        // prepararFirma no usa DocumentoService, BlobService ni la cuota si el documento no
+        // tiene blob ni usuario: basta con las dependencias de archivos
+        firmarDoc = new FirmarDoc();
+        ReflectionTestUtils.setField(firmarDoc, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(firmarDoc, "convertidorDocumentos", stub);
+        ReflectionTestUtils.setField(firmarDoc, "estampadorPdf",
+                new EstampadorPdf(true, true, PlantillaSello.porDefecto()));
+
+        System.out.println("\nPDF de origen: " + paginas + " páginas (" + contenido + "), "
+                + Files.size(pdfGenerado) + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(pdfGenerado);
+        try (Stream<Path> rutas = Files.walk(uploadDir)) {
+            rutas.sorted(Comparator.reverseOrder()).forEach(r -> r.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Documento firmar() {
+        Documento documento = new Documento();
+        documento.setNombreOriginal(nombreAlmacenado);
+        documento.setNombreAlmacenado(nombreAlmacenado);
+        documento.setTipoContenido("docx".equals(origen) ? TIPO_DOCX : "application/pdf");
+        Documento firmado = firmarDoc.prepararFirma(documento).documento();
+        if ("docx".equals(origen)) {
+            firmados.add(firmado);
+        }
+        return firmado;
+    }
+
+    // Con DOCX cada firma deja su propio PDF convertido y firmado (el convertido lleva un prefijo
+    // UUID y el firmado deriva de él), así ninguna invocación pisa a otra y se pueden borrar todos
+    // al final de la iteración. Un fixture por invocación distorsiona SampleTime en las
+    // operaciones cortas.
+    @TearDown(Level.Iteration)
+    public void limpiarIteracion() {
+        for (Documento d : firmados) {
+            fileStorageService.deleteFile(d.getNombreAlmacenado());
+            fileStorageService.deleteFile(d.getNombreFirmado());
+        }
+        firmados.clear();
+    }
+}
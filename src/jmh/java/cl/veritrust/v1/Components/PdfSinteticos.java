@@ -0,0 +1,88 @@
+package cl.veritrust.v1.Components;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * PDFs sintéticos A4 para los benchmarks: páginas de texto o páginas escaneadas (una imagen JPEG
+ * distinta por página). La semilla es fija, así dos corridas miden exactamente el mismo archivo.
+ * El documento se arma con buffers en archivo temporal para que 1000 páginas no llenen el heap.
+ */
+final class PdfSinteticos {
+
+    /**
+     * Resolución del escaneo en escala de grises y amplitud del ruido, que es lo que evita que el
+     * JPEG se comprima a casi nada.
+     */
+    record Escaneo(int ancho, int alto, int ruido) {}
+
+    /** Página carta a ~100 dpi, como un escaneo de oficina. */
+    static final Escaneo ESCANEO_COMPLETO = new Escaneo(850, 1100, 56);
+
+    /** Baja resolución y poco ruido: ~50 KB por página, 1000 páginas caben en el disco temporal. */
+    static final Escaneo ESCANEO_LIVIANO = new Escaneo(400, 560, 24);
+
+    private static final long SEMILLA = 42;
+
+    private PdfSinteticos() {
+    }
+
+    static void texto(Path destino, int paginas) throws IOException {
+        try (PDDocument doc = new PDDocument(MemoryUsageSetting.setupTempFileOnly())) {
+            for (int i = 0; i < paginas; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                doc.addPage(page);
+                try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                    cs.beginText();
+                    cs.setFont(PDType1Font.HELVETICA, 10);
+                    cs.setLeading(14);
+                    cs.newLineAtOffset(50, 780);
+                    for (int linea = 0; linea < 50; linea++) {
+                        cs.showText("Página " + (i + 1) + ", línea " + (linea + 1)
+                                + ": contrato de prestación de servicios, cláusula de confidencialidad.");
+                        cs.newLine();
+                    }
+                    cs.endText();
+                }
+            }
+            doc.save(destino.toFile());
+        }
+    }
+
+    static void escaneado(Path destino, int paginas, Escaneo escaneo) throws IOException {
+        Random random = new Random(SEMILLA);
+        try (PDDocument doc = new PDDocument(MemoryUsageSetting.setupTempFileOnly())) {
+            for (int i = 0; i < paginas; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                doc.addPage(page);
+                PDImageXObject imagen = JPEGFactory.createFromImage(doc, imagen(escaneo, random), 0.6f);
+                try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                    cs.drawImage(imagen, 0, 0, PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight());
+                }
+            }
+            doc.save(destino.toFile());
+        }
+    }
+
+    // fondo casi blanco con ruido uniforme en [256 - ruido, 255]
+    private static BufferedImage imagen(Escaneo escaneo, Random random) {
+        BufferedImage imagen = new BufferedImage(escaneo.ancho(), escaneo.alto(), BufferedImage.TYPE_BYTE_GRAY);
+        byte[] pixeles = ((DataBufferByte) imagen.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixeles.length; i++) {
+            pixeles[i] = (byte) (256 - escaneo.ruido() + random.nextInt(escaneo.ruido()));
+        }
+        return imagen;
+    }
+}
@@ -0,0 +1,67 @@
+package cl.veritrust.v1.Security;
+
+import cl.veritrust.v1.Service.RevocacionTokenService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pasada completa de {@link JwtFilter} sobre un request autenticado, con el UserDetailsService
+ * simulado (sin BD). Compara: sin cache de principales, con cache y en modo sin estado.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+    @Param({"sinCache", "cache", "stateless"})
+    public String modo;
+
+    private JwtFilter filtro;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private final FilterChain cadena = (req, res) -> {};
+
+    @Setup
+    public void setup() {
+        JwtUtil jwtUtil = new JwtUtil();
+        UserDetailsService userDetailsService = Mockito.mock(
+                UserDetailsService.class, Mockito.withSettings().stubOnly());
+        when(userDetailsService.loadUserByUsername(anyString()))
+                .thenReturn(new UsuarioPrincipal(1L, "218007244", "{bcrypt}hash", "admin"));
+
+        PrincipalCache cache = "sinCache".equals(modo)
+                ? new PrincipalCache(0, 0, new SimpleMeterRegistry())
+                : new PrincipalCache(10_000, 300, new SimpleMeterRegistry());
+
+        filtro = new JwtFilter(jwtUtil, userDetailsService, cache,
+                new RevocacionTokenService(), "stateless".equals(modo));
+
+        request = new MockHttpServletRequest("GET", "/api/documento/user/1");
+        request.addHeader("Authorization", "Bearer " + jwtUtil.generateToken("218007244", "admin", 1L));
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public Object filtrar() throws Exception {
+        try {
+            filtro.doFilter(request, response, cadena);
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
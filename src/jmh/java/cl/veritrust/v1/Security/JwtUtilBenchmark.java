@@ -0,0 +1,51 @@
+package cl.veritrust.v1.Security;
+
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de emitir un token y de validarlo por request: el flujo anterior (un parser nuevo y
+ * tres verificaciones HMAC por request) contra {@link JwtUtil#validarToken(String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtUtil = new JwtUtil();
+        token = jwtUtil.generateToken("218007244", "admin");
+    }
+
+    @Benchmark
+    public String generarToken() {
+        return jwtUtil.generateToken("218007244", "admin", 1L);
+    }
+
+    @Benchmark
+    public boolean validacionAnterior() {
+        // extractUsername en el filtro + validateToken (extractUsername + isTokenExpired)
+        String username = Jwts.parserBuilder().setSigningKey(JwtUtil.SECRET_KEY).build()
+                .parseClaimsJws(token).getBody().getSubject();
+        String extraido = Jwts.parserBuilder().setSigningKey(JwtUtil.SECRET_KEY).build()
+                .parseClaimsJws(token).getBody().getSubject();
+        Date expiracion = Jwts.parserBuilder().setSigningKey(JwtUtil.SECRET_KEY).build()
+                .parseClaimsJws(token).getBody().getExpiration();
+        return extraido.equals(username) && !expiracion.before(new Date());
+    }
+
+    @Benchmark
+    public TokenClaims validacionUnica() {
+        return jwtUtil.validarToken(token);
+    }
+}
@@ -0,0 +1,49 @@
+package cl.veritrust.v1.Security;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes por segundo según algoritmo y costo, para dimensionar el pool de credenciales.
+ * Con -t N se obtiene el throughput usando N núcleos:
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="PasswordEncoderBenchmark -t 1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+    // algoritmo:costo (para argon2 el costo son las iteraciones, con 19 MB de memoria)
+    @Param({"bcrypt:10", "bcrypt:12", "bcrypt:14", "argon2:2", "argon2:4"})
+    public String configuracion;
+
+    private PasswordEncoder encoder;
+    private String hash;
+
+    @Setup
+    public void setup() {
+        String[] partes = configuracion.split(":");
+        int costo = Integer.parseInt(partes[1]);
+        encoder = "argon2".equals(partes[0])
+                ? new Argon2PasswordEncoder(16, 32, 1, 19456, costo)
+                : new BCryptPasswordEncoder(costo);
+        hash = encoder.encode("cliente123");
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode("cliente123");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches("cliente123", hash);
+    }
+}
@@ -0,0 +1,206 @@
+package cl.veritrust.v1.Components;
+
+import cl.veritrust.v1.Service.FileStorageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Cache en disco de PDFs convertidos, delante de otro {@link ConvertidorDocumentos}. La clave es
+ * el SHA-256 del DOCX más la versión del convertidor, así una plantilla que se sube y firma una
+ * y otra vez se convierte una sola vez, y cambiar de convertidor invalida lo anterior.
+ *
+ * <p>El tamaño total está acotado con desalojo LRU. El índice vive en memoria y se reconstruye al
+ * arrancar a partir de la fecha de modificación de cada archivo, que se actualiza en cada acierto.
+ */
+public class ConvertidorConCache implements ConvertidorDocumentos, DisposableBean {
+
+    private static final String EXTENSION = ".pdf";
+
+    private final ConvertidorDocumentos delegado;
+    private final Path directorio;
+    private final String version;
+    private final long maxBytes;
+
+    // clave -> tamaño, en orden de acceso (el primero es el menos usado recientemente)
+    private final LinkedHashMap<String, Long> indice = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesEnCache;
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final Counter desalojos;
+
+    public ConvertidorConCache(ConvertidorDocumentos delegado, Path directorio, String version, long maxBytes,
+                               MeterRegistry meterRegistry) throws IOException {
+        this.delegado = delegado;
+        this.directorio = directorio;
+        this.version = version;
+        this.maxBytes = maxBytes;
+        this.desalojos = Counter.builder("veritrust.conversion.cache.desalojos")
+                .description("Entradas eliminadas de la cache de conversión por tamaño")
+                .register(meterRegistry);
+        Files.createDirectories(directorio);
+        cargarIndice();
+
+        FunctionCounter.builder("veritrust.conversion.cache", aciertos, AtomicLong::get)
+                .description("Conversiones resueltas desde la cache")
+                .tag("resultado", "acierto")
+                .register(meterRegistry);
+        FunctionCounter.builder("veritrust.conversion.cache", fallos, AtomicLong::get)
+                .description("Conversiones que no estaban en la cache")
+                .tag("resultado", "fallo")
+                .register(meterRegistry);
+        Gauge.builder("veritrust.conversion.cache.tasa-aciertos", this, ConvertidorConCache::tasaAciertos)
+                .description("Proporción de conversiones resueltas desde la cache")
+                .register(meterRegistry);
+        Gauge.builder("veritrust.conversion.cache.bytes", this, c -> c.getBytesEnCache())
+                .description("Bytes ocupados por la cache de conversión")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void convertirAPdf(File origen, File destino) throws IOException {
+        String clave = clave(origen);
+        Path cacheado = directorio.resolve(clave + EXTENSION);
+        if (contiene(clave)) {
+            try {
+                Files.copy(cacheado, destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.setLastModifiedTime(cacheado, FileTime.fromMillis(System.currentTimeMillis()));
+                aciertos.incrementAndGet();
+                return;
+            } catch (NoSuchFileException e) {
+                // desalojada entre la consulta y la copia: se convierte como un fallo
+                quitar(clave);
+            }
+        }
+
+        fallos.incrementAndGet();
+        delegado.convertirAPdf(origen, destino);
+        guardar(clave, destino.toPath());
+    }
+
+    public double tasaAciertos() {
+        long a = aciertos.get();
+        long total = a + fallos.get();
+        return total == 0 ? 0.0 : (double) a / total;
+    }
+
+    public synchronized long getBytesEnCache() {
+        return bytesEnCache;
+    }
+
+    private String clave(File origen) throws IOException {
+        MessageDigest digest = FileStorageService.nuevoDigestSha256();
+        try (InputStream in = Files.newInputStream(origen.toPath())) {
+            byte[] buf = new byte[65536];
+            int r;
+            while ((r = in.read(buf)) != -1) {
+                digest.update(buf, 0, r);
+            }
+        }
+        // la versión entra al hash: cambiarla deja inalcanzables (y luego desalojadas) las entradas previas
+        digest.update(("\n" + version).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private synchronized boolean contiene(String clave) {
+        return indice.get(clave) != null;
+    }
+
+    private synchronized void quitar(String clave) {
+        Long tamano = indice.remove(clave);
+        if (tamano != null) {
+            bytesEnCache -= tamano;
+        }
+    }
+
+    private void guardar(String clave, Path pdf) {
+        try {
+            long tamano = Files.size(pdf);
+            if (tamano > maxBytes) {
+                return;
+            }
+            Path temporal = directorio.resolve(clave + "." + UUID.randomUUID() + ".parcial");
+            Files.copy(pdf, temporal);
+            try {
+                Files.move(temporal, directorio.resolve(clave + EXTENSION),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.deleteIfExists(temporal);
+                throw e;
+            }
+            registrar(clave, tamano);
+        } catch (IOException e) {
+            // la cache es opcional: un error al guardar no afecta a la conversión ya hecha
+            System.err.println("No se pudo guardar la conversión en cache: " + e.getMessage());
+        }
+    }
+
+    private void registrar(String clave, long tamano) {
+        List<String> desalojadas = new ArrayList<>();
+        synchronized (this) {
+            Long anterior = indice.put(clave, tamano);
+            bytesEnCache += tamano - (anterior != null ? anterior : 0L);
+            Iterator<Map.Entry<String, Long>> it = indice.entrySet().iterator();
+            while (bytesEnCache > maxBytes && it.hasNext()) {
+                Map.Entry<String, Long> masAntigua = it.next();
+                if (masAntigua.getKey().equals(clave)) {
+                    continue;
+                }
+                bytesEnCache -= masAntigua.getValue();
+                desalojadas.add(masAntigua.getKey());
+                it.remove();
+            }
+        }
+        for (String d : desalojadas) {
+            try {
+                Files.deleteIfExists(directorio.resolve(d + EXTENSION));
+                desalojos.increment();
+            } catch (IOException ignored) {
+                // se reintenta al reconstruir el índice en el próximo arranque
+            }
+        }
+    }
+
+    private void cargarIndice() throws IOException {
+        List<Path> archivos;
+        try (Stream<Path> listado = Files.list(directorio)) {
+            archivos = listado.toList();
+        }
+        List<Map.Entry<Path, Long>> entradas = new ArrayList<>();
+        for (Path a : archivos) {
+            String nombre = a.getFileName().toString();
+            if (nombre.endsWith(".parcial")) {
+                Files.deleteIfExists(a);
+            } else if (nombre.endsWith(EXTENSION)) {
+                entradas.add(Map.entry(a, Files.getLastModifiedTime(a).toMillis()));
+            }
+        }
+        entradas.sort(Map.Entry.comparingByValue());
+        for (Map.Entry<Path, Long> e : entradas) {
+            String nombre = e.getKey().getFileName().toString();
+            registrar(nombre.substring(0, nombre.length() - EXTENSION.length()), Files.size(e.getKey()));
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (delegado instanceof DisposableBean d) {
+            d.destroy();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package cl.veritrust.v1.Components;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Conversión de documentos de oficina (DOCX) a PDF. La implementación se elige con
+ * app.conversion.modo (ver {@link cl.veritrust.v1.Config.ConversionConfig}).
+ */
+public interface ConvertidorDocumentos {
+
+    /** Convierte {@code origen} a PDF y lo escribe en {@code destino}. */
+    void convertirAPdf(File origen, File destino) throws IOException;
+}
@@ -0,0 +1,102 @@
+package cl.veritrust.v1.Components;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jodconverter.core.DocumentConverter;
+import org.jodconverter.core.document.DefaultDocumentFormatRegistry;
+import org.jodconverter.core.office.OfficeException;
+import org.jodconverter.core.office.OfficeUtils;
+import org.jodconverter.local.LocalConverter;
+import org.jodconverter.local.office.LocalOfficeManager;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Pool de procesos LibreOffice headless de larga vida (JODConverter), uno por puerto desde
+ * app.conversion.puerto-base. Cada proceso tiene su propio perfil bajo el directorio de trabajo,
+ * se reinicia si deja de responder y se recicla tras app.conversion.max-tareas-por-proceso
+ * conversiones. Las solicitudes esperan en la cola del pool hasta app.conversion.timeout-cola-ms.
+ *
+ * <p>Los procesos se levantan al primer uso (o al arrancar si se precalienta); así la latencia
+ * de cada conversión es la del render y no la del arranque de LibreOffice.
+ */
+public class ConvertidorLibreOfficePool implements ConvertidorDocumentos, DisposableBean {
+
+    private final LocalOfficeManager officeManager;
+    private final DocumentConverter converter;
+    private final MeterRegistry meterRegistry;
+    private volatile boolean iniciado;
+
+    public ConvertidorLibreOfficePool(String officeHome, int procesos, int puertoBase, int maxTareasPorProceso,
+                                      long timeoutTareaMs, long timeoutColaMs, Path dirTrabajo,
+                                      MeterRegistry meterRegistry) throws IOException {
+        Files.createDirectories(dirTrabajo);
+        int[] puertos = IntStream.range(0, Math.max(1, procesos)).map(i -> puertoBase + i).toArray();
+        LocalOfficeManager.Builder builder = LocalOfficeManager.builder()
+                .portNumbers(puertos)
+                .workingDir(dirTrabajo.toFile())
+                .maxTasksPerProcess(maxTareasPorProceso)
+                .taskExecutionTimeout(timeoutTareaMs)
+                .taskQueueTimeout(timeoutColaMs);
+        if (officeHome != null && !officeHome.isBlank()) {
+            builder.officeHome(officeHome);
+        }
+        this.officeManager = builder.build();
+        this.converter = LocalConverter.make(officeManager);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void iniciar() throws IOException {
+        if (iniciado) {
+            return;
+        }
+        synchronized (this) {
+            if (iniciado) {
+                return;
+            }
+            try {
+                officeManager.start();
+                iniciado = true;
+            } catch (OfficeException e) {
+                throw new IOException("No se pudo iniciar el pool de LibreOffice: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void convertirAPdf(File origen, File destino) throws IOException {
+        iniciar();
+        long inicio = System.nanoTime();
+        String resultado = "error";
+        try {
+            // El origen puede ser un blob sin extensión: el formato se indica explícitamente
+            converter.convert(origen).as(DefaultDocumentFormatRegistry.DOCX)
+                    .to(destino).as(DefaultDocumentFormatRegistry.PDF)
+                    .execute();
+            resultado = "ok";
+        } catch (OfficeException e) {
+            throw new IOException("Error al convertir DOCX a PDF: " + e.getMessage(), e);
+        } finally {
+            Timer.builder("veritrust.conversion.duracion")
+                    .description("Duración de la conversión DOCX a PDF")
+                    .tag("modo", "pool")
+                    .tag("resultado", resultado)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (iniciado) {
+            OfficeUtils.stopQuietly(officeManager);
+        }
+    }
+}
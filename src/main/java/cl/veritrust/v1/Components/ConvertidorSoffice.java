@@ -0,0 +1,92 @@
+package cl.veritrust.v1.Components;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Conversión lanzando un {@code soffice --headless} por documento. Cada ejecución usa su propio
+ * perfil de usuario (-env:UserInstallation) y directorio de salida, para que conversiones
+ * concurrentes no choquen en el perfil compartido. Paga el arranque de LibreOffice en cada
+ * documento; se mantiene como alternativa al pool (app.conversion.modo=proceso).
+ */
+public class ConvertidorSoffice implements ConvertidorDocumentos {
+
+    private final String comando;
+    private final Path dirTrabajo;
+    private final long timeoutMs;
+    private final MeterRegistry meterRegistry;
+
+    public ConvertidorSoffice(String comando, Path dirTrabajo, long timeoutMs, MeterRegistry meterRegistry) {
+        this.comando = comando;
+        this.dirTrabajo = dirTrabajo;
+        this.timeoutMs = timeoutMs;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void convertirAPdf(File origen, File destino) throws IOException {
+        Path ejecucion = dirTrabajo.resolve(UUID.randomUUID().toString());
+        Path perfil = ejecucion.resolve("perfil");
+        Path salida = ejecucion.resolve("salida");
+        Files.createDirectories(perfil);
+        Files.createDirectories(salida);
+
+        long inicio = System.nanoTime();
+        String resultado = "error";
+        try {
+            ProcessBuilder pb = new ProcessBuilder(comando,
+                    "-env:UserInstallation=" + perfil.toUri(),
+                    "--headless", "--convert-to", "pdf",
+                    "--outdir", salida.toString(), origen.getAbsolutePath());
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ejecucion.resolve("soffice.log").toFile());
+            Process p = pb.start();
+            try {
+                if (!p.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    p.destroyForcibly();
+                    throw new IOException("Tiempo de conversión DOCX a PDF agotado");
+                }
+                if (p.exitValue() != 0) {
+                    throw new IOException("Error al convertir DOCX a PDF. Código: " + p.exitValue());
+                }
+            } catch (InterruptedException e) {
+                p.destroyForcibly();
+                Thread.currentThread().interrupt();
+                throw new IOException("Conversión interrumpida", e);
+            }
+
+            Path pdf;
+            try (Stream<Path> archivos = Files.list(salida)) {
+                pdf = archivos.filter(a -> a.getFileName().toString().endsWith(".pdf")).findFirst()
+                        .orElseThrow(() -> new IOException("PDF convertido no encontrado en " + salida));
+            }
+            Files.move(pdf, destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            resultado = "ok";
+        } finally {
+            eliminarArbol(ejecucion);
+            Timer.builder("veritrust.conversion.duracion")
+                    .description("Duración de la conversión DOCX a PDF")
+                    .tag("modo", "proceso")
+                    .tag("resultado", resultado)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void eliminarArbol(Path raiz) {
+        try (Stream<Path> rutas = Files.walk(raiz)) {
+            rutas.sorted(Comparator.reverseOrder()).forEach(r -> r.toFile().delete());
+        } catch (IOException ignored) {
+            // un perfil que no se pudo borrar no afecta a las conversiones siguientes
+        }
+    }
+}
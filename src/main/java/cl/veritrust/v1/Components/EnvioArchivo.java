@@ -0,0 +1,150 @@
+package cl.veritrust.v1.Components;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Respuesta de descarga de archivos con soporte de Range (206). Para un rango único o el archivo
+ * completo usa sendfile de Tomcat (el kernel copia del archivo al socket, sin pasar por el heap);
+ * si el conector no lo soporta, o se piden varios rangos (multipart/byteranges), delega en el
+ * soporte de Range de Spring MVC para cuerpos Resource.
+ *
+ * Si se conoce el SHA-256 del archivo se usa como ETag fuerte: If-None-Match responde 304 sin
+ * leer el archivo, e If-Range con otro ETag ignora el Range y envía el archivo completo.
+ */
+@Component
+public class EnvioArchivo {
+
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Value("${app.descarga.sendfile-min-bytes:49152}")
+    private long sendfileMinBytes;
+
+    @Autowired
+    private MetricasTransferencia metricasTransferencia;
+
+    /**
+     * @param hash      SHA-256 del contenido servido (null si no se conoce: sin ETag)
+     * @param inmutable true si el contenido de esta URL no cambia nunca (documentos firmados)
+     */
+    public ResponseEntity<?> responder(HttpServletRequest request, Resource resource, HttpHeaders headers,
+                                       String hash, boolean inmutable) throws IOException {
+        String etag = null;
+        if (hash != null && !hash.isBlank()) {
+            etag = "\"" + hash.toLowerCase() + "\"";
+            // private: son archivos de usuarios autenticados, no deben quedar en caches compartidos
+            CacheControl cacheControl = inmutable
+                    ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable()
+                    : CacheControl.noCache().cachePrivate();
+            headers.setETag(etag);
+            headers.setCacheControl(cacheControl);
+
+            if (coincide(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(cacheControl)
+                        .build();
+            }
+        }
+
+        Path ruta = resource.getFile().toPath();
+        long largo = Files.size(ruta);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        List<HttpRange> rangos;
+        try {
+            rangos = HttpRange.parseRanges(request.getHeader(HttpHeaders.RANGE));
+        } catch (IllegalArgumentException ex) {
+            return rangoNoSatisfacible(largo);
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (!rangos.isEmpty() && ifRange != null && (etag == null || !ifRange.trim().equals(etag))) {
+            // La copia parcial del cliente es de otra versión: se envía completo
+            rangos = Collections.emptyList();
+        }
+
+        boolean sendfile = Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))
+                && !HttpMethod.HEAD.matches(request.getMethod())
+                && rangos.size() <= 1
+                && largo >= sendfileMinBytes;
+        if (!sendfile) {
+            if (rangos.isEmpty() && request.getHeader(HttpHeaders.RANGE) != null) {
+                // If-Range no coincide: Spring no debe volver a aplicar el Range
+                StreamingResponseBody cuerpo = out -> {
+                    long inicioEnvio = System.nanoTime();
+                    long enviados = Files.copy(ruta, out);
+                    metricasTransferencia.descarga(request, "stream", enviados, System.nanoTime() - inicioEnvio);
+                };
+                return ResponseEntity.ok().headers(headers).contentLength(largo).body(cuerpo);
+            }
+            if (rangos.isEmpty()) {
+                metricasTransferencia.descarga(request, "resource", largo);
+            }
+            return ResponseEntity.ok().headers(headers).body(resource);
+        }
+
+        long inicio = 0;
+        long cantidad = largo;
+        HttpStatus estado = HttpStatus.OK;
+        if (rangos.size() == 1) {
+            ResourceRegion region;
+            try {
+                region = rangos.get(0).toResourceRegion(resource);
+            } catch (IllegalArgumentException ex) {
+                return rangoNoSatisfacible(largo);
+            }
+            inicio = region.getPosition();
+            cantidad = region.getCount();
+            estado = HttpStatus.PARTIAL_CONTENT;
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + (inicio + cantidad - 1) + "/" + largo);
+        }
+
+        // Tomcat envía el archivo al confirmar la respuesta (el cuerpo queda vacío)
+        request.setAttribute(SENDFILE_FILENAME, ruta.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START, inicio);
+        request.setAttribute(SENDFILE_END, inicio + cantidad);
+        metricasTransferencia.descarga(request, "sendfile", cantidad);
+        return ResponseEntity.status(estado).headers(headers).contentLength(cantidad).build();
+    }
+
+    private static boolean coincide(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ResponseEntity<?> rangoNoSatisfacible(long largo) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + largo)
+                .build();
+    }
+}
@@ -0,0 +1,215 @@
+package cl.veritrust.v1.Components;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSUpdateInfo;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.util.Matrix;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estampa el sello de firma en cada página de un PDF y escribe el resultado en otro archivo.
+ * El sello se dibuja una sola vez por documento como Form XObject (ver {@link PlantillaSello})
+ * y cada página sólo lo referencia con un operador Do.
+ *
+ * <p>El documento se abre con buffers en archivo temporal (no en el heap) y se guarda como
+ * actualización incremental: se copian los bytes del original y se agregan al final sólo las
+ * páginas, recursos y content streams modificados, en vez de reserializar todo el PDF.
+ */
+@Component
+public class EstampadorPdf {
+
+    private static final PDFont FUENTE = PDType1Font.HELVETICA_BOLD;
+    private static final float INTERLINEADO = 1.2f;
+    private static final float SEPARACION_LOGO = 6;
+
+    // profundidad máxima del árbol de páginas al marcar el camino desde el catálogo
+    private static final int MAX_PROFUNDIDAD = 64;
+
+    private final boolean incremental;
+    private final boolean memoriaTemporal;
+    private final PlantillaSello plantilla;
+
+    @Autowired
+    public EstampadorPdf(
+            @Value("${app.firma.pdf.guardado-incremental:true}") boolean incremental,
+            @Value("${app.firma.pdf.memoria-temporal:true}") boolean memoriaTemporal,
+            @Value("${app.firma.sello.lineas:Firmado por: VeriTrust}") String lineas,
+            @Value("${app.firma.sello.tamano-fuente:12}") float tamanoFuente,
+            @Value("${app.firma.sello.margen-x:40}") float margenX,
+            @Value("${app.firma.sello.margen-y:40}") float margenY,
+            @Value("${app.firma.sello.logo:}") String rutaLogo) throws IOException {
+        this(incremental, memoriaTemporal,
+                PlantillaSello.desdeConfiguracion(lineas, tamanoFuente, margenX, margenY, rutaLogo));
+    }
+
+    public EstampadorPdf(boolean incremental, boolean memoriaTemporal, PlantillaSello plantilla) {
+        this.incremental = incremental;
+        this.memoriaTemporal = memoriaTemporal;
+        this.plantilla = plantilla;
+    }
+
+    public void estampar(File origen, File destino) throws IOException {
+        estampar(origen, destino, Map.of());
+    }
+
+    /** @param datos valores para los marcadores {clave} de la plantilla */
+    public void estampar(File origen, File destino, Map<String, String> datos) throws IOException {
+        MemoryUsageSetting memoria = memoriaTemporal
+                ? MemoryUsageSetting.setupTempFileOnly()
+                : MemoryUsageSetting.setupMainMemoryOnly();
+
+        try (PDDocument pdDocument = PDDocument.load(origen, memoria)) {
+            PDFormXObject sello = crearSello(pdDocument, datos);
+            for (PDPage page : pdDocument.getPages()) {
+                // recursos heredados del árbol: se fijan en la página para que el sello agregado
+                // quede en un diccionario que se reescribe junto con ella
+                if (!page.getCOSObject().containsKey(COSName.RESOURCES) && page.getResources() != null) {
+                    page.setResources(page.getResources());
+                }
+
+                PDRectangle mediaBox = page.getMediaBox();
+                float x = mediaBox.getLowerLeftX() + plantilla.margenX();
+                float y = mediaBox.getLowerLeftY() + plantilla.margenY();
+
+                try (PDPageContentStream contentStream = new PDPageContentStream(pdDocument, page, PDPageContentStream.AppendMode.APPEND, true, true)) {
+                    contentStream.saveGraphicsState();
+                    contentStream.transform(Matrix.getTranslateInstance(x, y));
+                    contentStream.drawForm(sello);
+                    contentStream.restoreGraphicsState();
+                }
+
+                if (incremental) {
+                    marcarModificada(page);
+                }
+            }
+
+            if (!incremental) {
+                pdDocument.save(destino);
+                return;
+            }
+            pdDocument.getDocumentCatalog().getCOSObject().setNeedToBeUpdated(true);
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(destino), 65536)) {
+                pdDocument.saveIncremental(out);
+            } catch (IOException | IllegalStateException ex) {
+                // PDFs que PDFBox sólo pudo abrir reconstruyendo la tabla xref no admiten
+                // actualización incremental: se vuelve al guardado completo
+                Files.deleteIfExists(destino.toPath());
+                pdDocument.save(destino);
+            }
+        }
+    }
+
+    /**
+     * Dibuja el sello (logo a la izquierda y líneas de texto) en un Form XObject del documento.
+     * Es un único stream indirecto: todas las páginas apuntan al mismo objeto.
+     */
+    private PDFormXObject crearSello(PDDocument pdDocument, Map<String, String> datos) throws IOException {
+        float tamano = plantilla.tamanoFuente();
+        float alturaLinea = tamano * INTERLINEADO;
+        List<String> lineas = plantilla.lineas(datos).stream().map(EstampadorPdf::codificable).toList();
+
+        float anchoTexto = 0;
+        for (String linea : lineas) {
+            anchoTexto = Math.max(anchoTexto, FUENTE.getStringWidth(linea) / 1000 * tamano);
+        }
+        float alto = Math.max(alturaLinea * lineas.size(), tamano);
+
+        PDImageXObject logo = null;
+        float anchoLogo = 0;
+        if (plantilla.logo() != null) {
+            logo = PDImageXObject.createFromByteArray(pdDocument, plantilla.logo(), "logo");
+            anchoLogo = alto * logo.getWidth() / logo.getHeight();
+        }
+        float inicioTexto = logo != null ? anchoLogo + SEPARACION_LOGO : 0;
+
+        PDFormXObject sello = new PDFormXObject(pdDocument);
+        sello.setBBox(new PDRectangle(inicioTexto + anchoTexto, alto));
+        sello.setResources(new PDResources());
+        try (PDPageContentStream cs = new PDPageContentStream(pdDocument, sello,
+                sello.getContentStream().createOutputStream(COSName.FLATE_DECODE))) {
+            if (logo != null) {
+                cs.drawImage(logo, 0, 0, anchoLogo, alto);
+            }
+            cs.beginText();
+            cs.setFont(FUENTE, tamano);
+            cs.setLeading(alturaLinea);
+            // la línea base de la primera línea queda a (alto - tamano) desde abajo
+            cs.newLineAtOffset(inicioTexto, alto - tamano);
+            for (int i = 0; i < lineas.size(); i++) {
+                if (i > 0) {
+                    cs.newLine();
+                }
+                cs.showText(lineas.get(i));
+            }
+            cs.endText();
+        }
+        return sello;
+    }
+
+    // Helvetica estándar sólo cubre WinAnsi: lo que no se pueda codificar se reemplaza por '?'
+    private static String codificable(String texto) {
+        StringBuilder sb = new StringBuilder(texto.length());
+        for (int i = 0; i < texto.length(); ) {
+            int cp = texto.codePointAt(i);
+            String c = new String(Character.toChars(cp));
+            try {
+                FUENTE.encode(c);
+                sb.append(c);
+            } catch (IOException | IllegalArgumentException e) {
+                sb.append('?');
+            }
+            i += Character.charCount(cp);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * PDFBox 2 sólo escribe en la actualización incremental los objetos marcados y alcanzables
+     * por un camino marcado desde el catálogo: la página, su contenido y recursos, y los nodos
+     * del árbol de páginas hasta la raíz.
+     */
+    private static void marcarModificada(PDPage page) {
+        COSDictionary pagina = page.getCOSObject();
+        pagina.setNeedToBeUpdated(true);
+        marcar(pagina.getDictionaryObject(COSName.CONTENTS));
+
+        PDResources recursos = page.getResources();
+        if (recursos != null) {
+            recursos.getCOSObject().setNeedToBeUpdated(true);
+            marcar(recursos.getCOSObject().getDictionaryObject(COSName.XOBJECT));
+        }
+
+        COSBase padre = pagina.getDictionaryObject(COSName.PARENT);
+        for (int i = 0; i < MAX_PROFUNDIDAD && padre instanceof COSDictionary nodo; i++) {
+            if (nodo.isNeedToBeUpdated()) {
+                break;
+            }
+            nodo.setNeedToBeUpdated(true);
+            padre = nodo.getDictionaryObject(COSName.PARENT);
+        }
+    }
+
+    private static void marcar(COSBase objeto) {
+        if (objeto instanceof COSUpdateInfo actualizable) {
+            actualizable.setNeedToBeUpdated(true);
+        }
+    }
+}
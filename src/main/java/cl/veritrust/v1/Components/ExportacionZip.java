@@ -0,0 +1,124 @@
+package cl.veritrust.v1.Components;
+
+import cl.veritrust.v1.Model.Documento;
+import cl.veritrust.v1.Service.FileStorageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exporta varios documentos como un ZIP escrito directamente en la respuesta, archivo por archivo,
+ * sin temporales ni el ZIP completo en memoria.
+ *
+ * PDF y DOCX ya vienen comprimidos, así que van como entradas STORED (sin deflate). STORED exige
+ * conocer el CRC-32 antes de escribir la cabecera local, por lo que esos archivos se leen dos veces
+ * de forma secuencial; la segunda lectura normalmente sale del page cache.
+ */
+@Component
+public class ExportacionZip {
+
+    private static final Set<String> TIPOS_COMPRIMIDOS = Set.of(
+            "application/pdf",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/zip",
+            "image/jpeg",
+            "image/png");
+
+    public record Entrada(String nombre, Path archivo, boolean almacenar) {}
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    /**
+     * Resuelve los archivos antes de empezar a responder, para que un archivo faltante sea un error
+     * HTTP normal y no un ZIP truncado. Para documentos firmados se exporta el archivo firmado.
+     */
+    public List<Entrada> preparar(List<Documento> documentos) throws IOException {
+        List<Entrada> entradas = new ArrayList<>(documentos.size());
+        Set<String> nombres = new HashSet<>();
+        for (Documento d : documentos) {
+            Path archivo;
+            String tipo = d.getTipoContenido();
+            if (d.getRutaAlmacenamiento() != null) {
+                archivo = fileStorageService.loadFileByRelativePath(d.getRutaAlmacenamiento()).getFile().toPath();
+                tipo = "application/pdf";
+            } else if (d.isFirmado() && d.getNombreFirmado() != null) {
+                archivo = fileStorageService.loadFileAsResource(d.getNombreFirmado()).getFile().toPath();
+                tipo = "application/pdf";
+            } else {
+                archivo = fileStorageService.loadDocumentoOriginal(d).getFile().toPath();
+            }
+            String nombre = d.getNombreOriginal() != null ? d.getNombreOriginal() : archivo.getFileName().toString();
+            if ("application/pdf".equals(tipo)) {
+                nombre = conExtensionPdf(nombre);
+            }
+            nombre = nombreUnico(nombres, nombre);
+            entradas.add(new Entrada(nombre, archivo, tipo != null && TIPOS_COMPRIMIDOS.contains(tipo)));
+        }
+        return entradas;
+    }
+
+    /**
+     * @return bytes de contenido escritos (sin contar la estructura del ZIP)
+     */
+    public long escribir(List<Entrada> entradas, OutputStream salida) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(salida);
+        long total = 0;
+        for (Entrada e : entradas) {
+            ZipEntry entry = new ZipEntry(e.nombre());
+            if (e.almacenar()) {
+                long tamano = Files.size(e.archivo());
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(tamano);
+                entry.setCompressedSize(tamano);
+                entry.setCrc(crc32(e.archivo()));
+            }
+            zip.putNextEntry(entry);
+            total += Files.copy(e.archivo(), zip);
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+        return total;
+    }
+
+    private static long crc32(Path archivo) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(archivo)) {
+            int leidos;
+            while ((leidos = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, leidos);
+            }
+        }
+        return crc.getValue();
+    }
+
+    // un DOCX firmado se exporta convertido: el nombre original conserva la extensión .docx
+    private static String conExtensionPdf(String nombre) {
+        if (nombre.toLowerCase().endsWith(".pdf")) return nombre;
+        int dot = nombre.lastIndexOf('.');
+        return (dot > 0 ? nombre.substring(0, dot) : nombre) + ".pdf";
+    }
+
+    private static String nombreUnico(Set<String> usados, String nombre) {
+        String limpio = nombre.replace('\\', '_').replace('/', '_');
+        if (usados.add(limpio)) return limpio;
+        int dot = limpio.lastIndexOf('.');
+        String base = dot > 0 ? limpio.substring(0, dot) : limpio;
+        String ext = dot > 0 ? limpio.substring(dot) : "";
+        for (int i = 2; ; i++) {
+            String candidato = base + " (" + i + ")" + ext;
+            if (usados.add(candidato)) return candidato;
+        }
+    }
+}
@@ -1,19 +1,20 @@
 package cl.veritrust.v1.Components;
 
+import cl.veritrust.v1.Exception.ResourceNotFoundException;
 import cl.veritrust.v1.Model.Documento;
+import cl.veritrust.v1.Service.BlobService;
+import cl.veritrust.v1.Service.CuotaAlmacenamientoService;
 import cl.veritrust.v1.Service.DocumentoService;
 import cl.veritrust.v1.Service.FileStorageService;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
 import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 @Component
@@ -25,89 +26,165 @@ public class FirmarDoc {
     @Autowired
     private DocumentoService documentoService;
 
-    @Value("${app.libreoffice.path:soffice}")
-    private String libreofficeCmd;
+    @Autowired
+    private BlobService blobService;
+
+    @Autowired
+    private CuotaAlmacenamientoService cuotaAlmacenamientoService;
+
+    @Autowired
+    private ConvertidorDocumentos convertidorDocumentos;
+
+    @Autowired
+    private EstampadorPdf estampadorPdf;
+
+    private static final DateTimeFormatter FORMATO_FECHA_SELLO = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
+
+    /**
+     * Firma pendiente de persistir: el documento ya apunta a los archivos nuevos. Si el DOCX se
+     * convirtió, tamanoAnterior es lo que tenía reservado en la cuota antes de la conversión.
+     */
+    public record FirmaPreparada(Documento documento, String hashBlobReemplazado, boolean convertido, Long tamanoAnterior) {}
 
     public Documento signDocumento(Documento documento) {
+        FirmaPreparada firma = prepararFirma(documento);
+        DocumentoService.DocumentosGuardados guardados;
+        try {
+            guardados = documentoService.GuardarDocumentos(List.of(documento), blobsReemplazados(List.of(firma)));
+        } catch (RuntimeException ex) {
+            descartarFirma(firma);
+            throw ex;
+        }
+        if (guardados.inexistentes().contains(documento.getId())) {
+            // eliminado mientras se firmaba
+            descartarFirma(firma);
+            throw new ResourceNotFoundException("Documento no encontrado con id: " + documento.getId());
+        }
+        completarFirma(firma, guardados.blobsSoltados().contains(documento.getId()));
+        return documento;
+    }
+
+    /**
+     * Convierte (si es DOCX) y estampa el documento, dejando la entidad actualizada sin
+     * guardarla; quien llama la persiste (una a una o en lote) con
+     * {@link DocumentoService#GuardarDocumentos} y luego invoca {@link #completarFirma}, o
+     * {@link #descartarFirma} si no se pudo guardar.
+     */
+    public FirmaPreparada prepararFirma(Documento documento) {
         try {
             String tipo = documento.getTipoContenido();
-            String stored = documento.getNombreAlmacenado();
-            File sourceFile = fileStorageService.loadFileAsResource(stored).getFile();
+            File sourceFile = fileStorageService.loadDocumentoOriginal(documento).getFile();
+            String hashBlobReemplazado = null;
+            boolean convertido = false;
+            Long tamanoAnterior = documento.getTamano();
 
             if (tipo != null && tipo.toLowerCase().contains("officedocument.wordprocessingml.document")) {
                 sourceFile = convertDocxToPdf(sourceFile);
                 String pdfStoredName = storeConvertedPdf(sourceFile, documento);
                 documento.setNombreAlmacenado(pdfStoredName);
                 documento.setTipoContenido("application/pdf");
+                // El PDF convertido es un archivo propio: se suelta la referencia al DOCX compartido
+                if (documento.getBlob() != null) {
+                    hashBlobReemplazado = documento.getBlob().getHash();
+                }
+                documento.setBlob(null);
+                convertido = true;
             }
 
-            return signVisualPdf(documento);
+            signVisualPdf(documento);
+            return new FirmaPreparada(documento, hashBlobReemplazado, convertido, tamanoAnterior);
         } catch (IOException ex) {
             throw new RuntimeException("Error en proceso de firmado: " + ex.getMessage(), ex);
         }
     }
 
-    private Documento signVisualPdf(Documento documento) throws IOException {
-        var resource = fileStorageService.loadFileAsResource(documento.getNombreAlmacenado());
-        File originalFile = resource.getFile();
-
-        try (PDDocument pdDocument = PDDocument.load(originalFile)) {
-            for (PDPage page : pdDocument.getPages()) {
-                PDRectangle mediaBox = page.getMediaBox();
-                float x = mediaBox.getLowerLeftX() + 40;
-                float y = mediaBox.getLowerLeftY() + 40;
-
-                try (PDPageContentStream contentStream = new PDPageContentStream(pdDocument, page, PDPageContentStream.AppendMode.APPEND, true, true)) {
-                    contentStream.beginText();
-                    contentStream.setFont(PDType1Font.HELVETICA_BOLD, 12);
-                    contentStream.newLineAtOffset(x, y);
-                    contentStream.showText("Firmado por: VeriTrust");
-                    contentStream.endText();
-                }
+    /** id de documento -> blob DOCX que reemplazó, para soltarlos al guardar. */
+    public static Map<Long, String> blobsReemplazados(List<FirmaPreparada> firmas) {
+        Map<Long, String> blobs = new HashMap<>();
+        for (FirmaPreparada firma : firmas) {
+            if (firma.hashBlobReemplazado() != null) {
+                blobs.put(firma.documento().getId(), firma.hashBlobReemplazado());
             }
+        }
+        return blobs;
+    }
 
-            String originalStored = documento.getNombreAlmacenado();
-            String signedFileName = makeSignedName(originalStored);
-            Path signedPath = fileStorageService.getUploadDir().resolve(signedFileName);
-            pdDocument.save(signedPath.toFile());
-
-            documento.setFirmado(true);
-            documento.setNombreFirmado(signedFileName);
-            documentoService.CrearDocumento(documento);
-            return documento;
+    /**
+     * Una vez persistido el documento firmado, pasa la cuota del DOCX al tamaño del PDF
+     * convertido y libera el blob DOCX reemplazado, esto último sólo si el guardado fue el que
+     * soltó la referencia (otra firma o una eliminación pudo adelantarse).
+     */
+    public void completarFirma(FirmaPreparada firma, boolean blobSoltado) {
+        Documento documento = firma.documento();
+        if (firma.convertido() && documento.getUsuario() != null && firma.tamanoAnterior() != null) {
+            cuotaAlmacenamientoService.ajustar(documento.getUsuario().getId(), firma.tamanoAnterior(), documento.getTamano());
+        }
+        if (blobSoltado) {
+            blobService.liberar(firma.hashBlobReemplazado());
         }
     }
 
-    private File convertDocxToPdf(File docxFile) throws IOException {
-        File outDir = fileStorageService.getUploadDir().toFile();
-        ProcessBuilder pb = new ProcessBuilder(libreofficeCmd, "--headless", "--convert-to", "pdf", "--outdir", outDir.getAbsolutePath(), docxFile.getAbsolutePath());
-        Process p = pb.start();
-        try {
-            int rc = p.waitFor();
-            if (rc != 0) {
-                throw new IOException("Error al convertir DOCX a PDF. Código: " + rc);
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Conversión interrumpida", e);
+    /** Borra los archivos que escribió una firma que no se llegó a guardar. */
+    public void descartarFirma(FirmaPreparada firma) {
+        Documento documento = firma.documento();
+        if (documento.getNombreFirmado() != null) {
+            fileStorageService.deleteFile(documento.getNombreFirmado());
+        }
+        if (firma.convertido()) {
+            fileStorageService.deleteFile(documento.getNombreAlmacenado());
         }
+    }
+
+    private void signVisualPdf(Documento documento) throws IOException {
+        File originalFile = fileStorageService.loadDocumentoOriginal(documento).getFile();
 
+        String signedFileName = makeSignedName(documento.getNombreAlmacenado());
+        Path signedPath = fileStorageService.rutaNuevoArchivo(signedFileName);
+        estampadorPdf.estampar(originalFile, signedPath.toFile(), Map.of(
+                "fecha", LocalDateTime.now().format(FORMATO_FECHA_SELLO),
+                "documento", documento.getNombreOriginal() != null ? documento.getNombreOriginal() : ""));
+
+        documento.setFirmado(true);
+        documento.setNombreFirmado(signedFileName);
+    }
+
+    private File convertDocxToPdf(File docxFile) throws IOException {
+        // La salida es intermedia: va a tmp/ y se elimina al copiarla a su ubicación final
+        File outDir = fileStorageService.getUploadDir().resolve("tmp").toFile();
+        outDir.mkdirs();
         String name = docxFile.getName();
         int dot = name.lastIndexOf('.');
         String base = dot > 0 ? name.substring(0, dot) : name;
-        File pdf = new File(outDir, base + ".pdf");
+        File pdf = new File(outDir, UUID.randomUUID() + "_" + base + ".pdf");
+        try {
+            convertidorDocumentos.convertirAPdf(docxFile, pdf);
+        } catch (IOException ex) {
+            pdf.delete();
+            throw ex;
+        }
         if (!pdf.exists()) throw new IOException("PDF convertido no encontrado: " + pdf.getAbsolutePath());
         return pdf;
     }
 
     private String storeConvertedPdf(File pdfFile, Documento documento) throws IOException {
-        String newName = UUID.randomUUID().toString() + "_" + pdfFile.getName();
-        Path target = fileStorageService.getUploadDir().resolve(newName);
-        try (InputStream in = new FileInputStream(pdfFile); OutputStream out = new FileOutputStream(target.toFile())) {
+        // el temporal ya lleva un prefijo único
+        String newName = pdfFile.getName();
+        Path target = fileStorageService.rutaNuevoArchivo(newName);
+        MessageDigest digest = FileStorageService.nuevoDigestSha256();
+        long tamano = 0;
+        try (InputStream in = new FileInputStream(pdfFile); OutputStream out = new DigestOutputStream(new FileOutputStream(target.toFile()), digest)) {
             byte[] buf = new byte[8192];
             int r;
-            while ((r = in.read(buf)) != -1) out.write(buf, 0, r);
+            while ((r = in.read(buf)) != -1) {
+                out.write(buf, 0, r);
+                tamano += r;
+            }
         }
+        pdfFile.delete();
+        // El archivo servido pasa a ser el PDF: el hash (ETag) y el tamaño deben corresponder a él
+        // la cuota se ajusta en completarFirma, cuando el documento ya quedó guardado
+        documento.setHashDocumento(HexFormat.of().formatHex(digest.digest()));
+        documento.setTamano(tamano);
         return newName;
     }
 
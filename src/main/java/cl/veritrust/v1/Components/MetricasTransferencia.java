@@ -0,0 +1,108 @@
+package cl.veritrust.v1.Components;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Bytes y tasa de transferencia por endpoint para subidas y descargas. El endpoint se toma del
+ * patrón de la ruta (p. ej. /api/documento/{id}/download), no de la URI, para que la cantidad de
+ * series no crezca con los ids.
+ *
+ * En descargas por sendfile o por Resource el envío ocurre después de que el controlador retorna,
+ * así que sólo se registran los bytes; la tasa se mide donde la aplicación escribe el cuerpo.
+ */
+@Component
+public class MetricasTransferencia {
+
+    private final MeterRegistry meterRegistry;
+
+    public MetricasTransferencia(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void subida(HttpServletRequest request, long bytes, long nanos) {
+        registrar("subida", endpoint(request), "stream", bytes, nanos);
+    }
+
+    public void descarga(HttpServletRequest request, String modo, long bytes) {
+        registrar("descarga", endpoint(request), modo, bytes, 0);
+    }
+
+    public void descarga(HttpServletRequest request, String modo, long bytes, long nanos) {
+        registrar("descarga", endpoint(request), modo, bytes, nanos);
+    }
+
+    /**
+     * Envuelve un stream para contar los bytes que se leen de él.
+     */
+    public static ConteoInputStream contar(InputStream in) {
+        return new ConteoInputStream(in);
+    }
+
+    private void registrar(String direccion, String endpoint, String modo, long bytes, long nanos) {
+        DistributionSummary.builder("veritrust.transferencia.bytes")
+                .description("Bytes transferidos por request")
+                .baseUnit("bytes")
+                .tag("direccion", direccion)
+                .tag("endpoint", endpoint)
+                .tag("modo", modo)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(bytes);
+        if (nanos > 0 && bytes > 0) {
+            DistributionSummary.builder("veritrust.transferencia.tasa")
+                    .description("Tasa de transferencia por request")
+                    .baseUnit("bytes/s")
+                    .tag("direccion", direccion)
+                    .tag("endpoint", endpoint)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(bytes * 1_000_000_000d / nanos);
+        }
+    }
+
+    private static String endpoint(HttpServletRequest request) {
+        Object patron = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return patron != null ? patron.toString() : "desconocido";
+    }
+
+    public static final class ConteoInputStream extends FilterInputStream {
+        private long bytes;
+
+        private ConteoInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) bytes++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) bytes += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long s = super.skip(n);
+            bytes += s;
+            return s;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package cl.veritrust.v1.Components;
+
+import cl.veritrust.v1.Exception.CargaInvalidaException;
+import cl.veritrust.v1.Service.ArchivoAlmacenado;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.core.FileUploadException;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Lectura incremental de multipart/form-data: las partes se recorren en el orden en que llegan y
+ * el archivo se entrega como stream al destino, que lo escribe en su ubicación final con el hash
+ * calculado en la misma pasada. A diferencia del multipart estándar no hay archivo temporal, así
+ * que cada subida se escribe en disco una sola vez.
+ *
+ * Requiere spring.servlet.multipart.resolve-lazily=true y que el endpoint no lea parámetros de la
+ * request (getParameter obliga a Tomcat a parsear y consumir el cuerpo); los parámetros de la query
+ * se leen aquí desde la query string.
+ */
+@Component
+public class MultipartEnStreaming {
+
+    // Campos de texto del formulario: nunca deberían acercarse a esto
+    private static final int MAX_CAMPO_BYTES = 8 * 1024;
+
+    /**
+     * Recibe la parte del archivo junto con los campos leídos hasta ese momento (los de la query y
+     * los del formulario que llegaron antes del archivo).
+     */
+    @FunctionalInterface
+    public interface DestinoArchivo {
+        ArchivoAlmacenado guardar(String nombreArchivo, String tipoContenido, Map<String, String> camposPrevios,
+                                  InputStream contenido);
+    }
+
+    public record Formulario(Map<String, String> campos, String nombreArchivo, String tipoContenido,
+                             ArchivoAlmacenado archivo) {
+        public String campo(String nombre) {
+            return campos.get(nombre);
+        }
+    }
+
+    @Value("${spring.servlet.multipart.max-request-size:20MB}")
+    private DataSize maxRequest;
+
+    @Autowired
+    private MetricasTransferencia metricasTransferencia;
+
+    /**
+     * Lee el formulario. La parte {@code campoArchivo} se pasa a {@code destino} apenas llega; si el
+     * destino rechaza el tipo de contenido (lanzando una excepción) no se escribe nada. Un archivo
+     * que supera {@code maxArchivoBytes} se corta y se informa como {@link CargaInvalidaException};
+     * si falla la lectura después de guardado el archivo, se elimina con {@code descartar}.
+     */
+    public Formulario leer(HttpServletRequest request, String campoArchivo, long maxArchivoBytes,
+                           DestinoArchivo destino, Consumer<ArchivoAlmacenado> descartar) {
+        if (!JakartaServletFileUpload.isMultipartContent(request)) {
+            throw new CargaInvalidaException("Se esperaba multipart/form-data");
+        }
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+        upload.setSizeMax(maxRequest.toBytes());
+        upload.setFileSizeMax(maxArchivoBytes);
+
+        Map<String, String> campos = parametrosQuery(request);
+        String nombreArchivo = null;
+        String tipoContenido = null;
+        ArchivoAlmacenado archivo = null;
+        try {
+            FileItemInputIterator partes = upload.getItemIterator(request);
+            while (partes.hasNext()) {
+                FileItemInput parte = partes.next();
+                try (InputStream contenido = parte.getInputStream()) {
+                    if (parte.isFormField()) {
+                        byte[] valor = contenido.readNBytes(MAX_CAMPO_BYTES + 1);
+                        if (valor.length > MAX_CAMPO_BYTES) {
+                            throw new CargaInvalidaException("Campo demasiado grande: " + parte.getFieldName());
+                        }
+                        campos.put(parte.getFieldName(), new String(valor, StandardCharsets.UTF_8));
+                    } else if (campoArchivo.equals(parte.getFieldName()) && archivo == null) {
+                        nombreArchivo = parte.getName();
+                        tipoContenido = parte.getContentType();
+                        long inicio = System.nanoTime();
+                        archivo = destino.guardar(nombreArchivo, tipoContenido, Map.copyOf(campos), contenido);
+                        metricasTransferencia.subida(request, archivo.tamano(), System.nanoTime() - inicio);
+                    }
+                    // otras partes de archivo se descartan al cerrar su stream
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            // el archivo ya escrito no sirve si el resto del formulario no se pudo leer
+            if (archivo != null) {
+                descartar.accept(archivo);
+            }
+            throw traducir(ex);
+        }
+        return new Formulario(campos, nombreArchivo, tipoContenido, archivo);
+    }
+
+    private static RuntimeException traducir(Exception ex) {
+        // el destino envuelve los errores de lectura, así que el límite de tamaño puede venir como causa
+        if (ex instanceof FileUploadSizeException || ex.getCause() instanceof FileUploadSizeException) {
+            return new CargaInvalidaException("El archivo excede el tamaño máximo permitido");
+        }
+        if (ex instanceof FileUploadException || ex.getCause() instanceof FileUploadException) {
+            return new CargaInvalidaException("Solicitud multipart inválida: " + ex.getMessage());
+        }
+        if (ex instanceof RuntimeException r) {
+            return r;
+        }
+        return new UncheckedIOException((IOException) ex);
+    }
+
+    private static Map<String, String> parametrosQuery(HttpServletRequest request) {
+        Map<String, String> campos = new HashMap<>();
+        String query = request.getQueryString();
+        if (query != null) {
+            UriComponentsBuilder.newInstance().query(query).build().getQueryParams()
+                    .forEach((nombre, valores) -> campos.put(
+                            URLDecoder.decode(nombre, StandardCharsets.UTF_8),
+                            valores.isEmpty() || valores.get(0) == null ? "" : URLDecoder.decode(valores.get(0), StandardCharsets.UTF_8)));
+        }
+        return campos;
+    }
+}
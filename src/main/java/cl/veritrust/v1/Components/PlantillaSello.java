@@ -0,0 +1,42 @@
+package cl.veritrust.v1.Components;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plantilla del sello de firma: líneas de texto (con marcadores {clave} que se reemplazan en cada
+ * firma, p. ej. {fecha} o {documento}), tamaño de fuente, margen desde la esquina inferior
+ * izquierda y un logo opcional. Se construye una vez desde la configuración y se reutiliza en
+ * todas las firmas; el logo queda leído en memoria.
+ */
+public record PlantillaSello(List<String> lineas, float tamanoFuente, float margenX, float margenY, byte[] logo) {
+
+    public static PlantillaSello porDefecto() {
+        return new PlantillaSello(List.of("Firmado por: VeriTrust"), 12, 40, 40, null);
+    }
+
+    /** Las líneas se separan con '|'; rutaLogo vacía significa sin logo. */
+    public static PlantillaSello desdeConfiguracion(String lineas, float tamanoFuente, float margenX, float margenY,
+                                                    String rutaLogo) throws IOException {
+        List<String> separadas = Arrays.stream(lineas.split("\\|"))
+                .map(String::trim)
+                .filter(l -> !l.isEmpty())
+                .toList();
+        byte[] logo = rutaLogo == null || rutaLogo.isBlank() ? null : Files.readAllBytes(Path.of(rutaLogo));
+        return new PlantillaSello(separadas, tamanoFuente, margenX, margenY, logo);
+    }
+
+    public List<String> lineas(Map<String, String> datos) {
+        return lineas.stream().map(linea -> {
+            String resultado = linea;
+            for (Map.Entry<String, String> dato : datos.entrySet()) {
+                resultado = resultado.replace("{" + dato.getKey() + "}", dato.getValue() != null ? dato.getValue() : "");
+            }
+            return resultado;
+        }).toList();
+    }
+}
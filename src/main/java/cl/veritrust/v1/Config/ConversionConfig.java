@@ -0,0 +1,81 @@
+package cl.veritrust.v1.Config;
+
+import cl.veritrust.v1.Components.ConvertidorConCache;
+import cl.veritrust.v1.Components.ConvertidorDocumentos;
+import cl.veritrust.v1.Components.ConvertidorLibreOfficePool;
+import cl.veritrust.v1.Components.ConvertidorSoffice;
+import cl.veritrust.v1.Service.ReconciliacionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Selecciona el convertidor DOCX a PDF según app.conversion.modo: "pool" (procesos LibreOffice
+ * persistentes) o "proceso" (un soffice por documento). Con app.conversion.cache.habilitada el
+ * convertidor queda detrás de una cache en disco por hash del documento.
+ */
+@Configuration
+public class ConversionConfig {
+
+    @Bean
+    public ConvertidorDocumentos convertidorDocumentos(
+            @Value("${app.conversion.modo:pool}") String modo,
+            @Value("${app.conversion.dir-trabajo:${java.io.tmpdir}/veritrust-libreoffice}") String dirTrabajoConfig,
+            @Value("${app.libreoffice.path:soffice}") String comando,
+            @Value("${app.conversion.office-home:}") String officeHome,
+            @Value("${app.conversion.procesos:2}") int procesos,
+            @Value("${app.conversion.puerto-base:2002}") int puertoBase,
+            @Value("${app.conversion.max-tareas-por-proceso:200}") int maxTareasPorProceso,
+            @Value("${app.conversion.timeout-ms:120000}") long timeoutMs,
+            @Value("${app.conversion.timeout-cola-ms:30000}") long timeoutColaMs,
+            @Value("${app.conversion.precalentar:false}") boolean precalentar,
+            @Value("${app.conversion.cache.habilitada:true}") boolean cacheHabilitada,
+            @Value("${app.conversion.cache.dir:}") String cacheDir,
+            @Value("${app.conversion.cache.max-bytes:1073741824}") long cacheMaxBytes,
+            @Value("${app.conversion.cache.version:1}") String cacheVersion,
+            @Value("${app.upload.dir}") String uploadDir,
+            MeterRegistry meterRegistry
+    ) throws IOException {
+        // perfiles de LibreOffice fuera de uploads: el reconciliador no debe tocarlos
+        Path dirTrabajo = Paths.get(dirTrabajoConfig).toAbsolutePath().normalize();
+        ConvertidorDocumentos convertidor = "proceso".equalsIgnoreCase(modo)
+                ? new ConvertidorSoffice(comando, dirTrabajo, timeoutMs, meterRegistry)
+                : crearPool(officeHome, procesos, puertoBase, maxTareasPorProceso, timeoutMs, timeoutColaMs,
+                        precalentar, dirTrabajo, meterRegistry);
+        if (!cacheHabilitada) {
+            return convertidor;
+        }
+
+        // el modo entra en la versión: PDFs de soffice suelto y del pool no se mezclan
+        Path dirCache = cacheDir.isBlank()
+                ? Paths.get(uploadDir).toAbsolutePath().normalize().resolve(ReconciliacionService.CACHE_CONVERSION)
+                : Paths.get(cacheDir).toAbsolutePath().normalize();
+        return new ConvertidorConCache(convertidor, dirCache, modo.toLowerCase() + "-" + cacheVersion,
+                cacheMaxBytes, meterRegistry);
+    }
+
+    private ConvertidorLibreOfficePool crearPool(String officeHome, int procesos, int puertoBase,
+                                                 int maxTareasPorProceso, long timeoutMs, long timeoutColaMs,
+                                                 boolean precalentar, Path dirTrabajo,
+                                                 MeterRegistry meterRegistry) throws IOException {
+        ConvertidorLibreOfficePool pool = new ConvertidorLibreOfficePool(officeHome, procesos, puertoBase,
+                maxTareasPorProceso, timeoutMs, timeoutColaMs, dirTrabajo, meterRegistry);
+        if (precalentar) {
+            Thread hilo = new Thread(() -> {
+                try {
+                    pool.iniciar();
+                } catch (IOException e) {
+                    System.err.println("No se pudo precalentar LibreOffice: " + e.getMessage());
+                }
+            }, "libreoffice-inicio");
+            hilo.setDaemon(true);
+            hilo.start();
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,111 @@
+package cl.veritrust.v1.Controller;
+
+import cl.veritrust.v1.Service.FirmaLoteService;
+import cl.veritrust.v1.Service.MigracionAlmacenamientoService;
+import cl.veritrust.v1.Service.ReconciliacionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+
+import java.util.List;
+import java.util.Map;
+
+@CrossOrigin(origins = "http://localhost:5173")
+@RestController
+@RequestMapping("/api/admin")
+@Tag(name = "Administración", description = "Operaciones de mantenimiento (sólo rol admin)")
+public class AdminController {
+
+    @Autowired
+    private MigracionAlmacenamientoService migracionAlmacenamientoService;
+
+    @Autowired
+    private ReconciliacionService reconciliacionService;
+
+    @Autowired
+    private FirmaLoteService firmaLoteService;
+
+    @Operation(
+        summary = "Migrar almacenamiento a layout fragmentado",
+        description = "Mueve un lote de archivos del directorio plano de uploads a ab/cd/<nombre>. Repetir mientras 'pendientes' sea true; los archivos siguen accesibles durante la migración."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lote migrado"),
+        @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante"),
+        @ApiResponse(responseCode = "403", description = "Requiere rol admin")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping("/almacenamiento/migrar")
+    public ResponseEntity<MigracionAlmacenamientoService.ResultadoMigracion> migrarAlmacenamiento(
+            @Parameter(description = "Cantidad máxima de archivos a mover")
+            @RequestParam(defaultValue = "500") int lote) {
+        return ResponseEntity.ok(migracionAlmacenamientoService.migrarLote(Math.max(1, lote)));
+    }
+
+    @Operation(
+        summary = "Último reporte de reconciliación",
+        description = "Archivos huérfanos (sin documento, blob ni carga que los referencie) y documentos cuyos archivos no existen"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Reporte de la última reconciliación"),
+        @ApiResponse(responseCode = "204", description = "Aún no se ha ejecutado ninguna reconciliación"),
+        @ApiResponse(responseCode = "403", description = "Requiere rol admin")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping("/reconciliacion")
+    public ResponseEntity<?> obtenerReconciliacion() {
+        ReconciliacionService.Reporte reporte = reconciliacionService.getUltimoReporte();
+        if (reporte == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(reporte);
+    }
+
+    @Operation(
+        summary = "Ejecutar reconciliación",
+        description = "Inicia una reconciliación en segundo plano; el resultado se consulta con GET /api/admin/reconciliacion"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Reconciliación iniciada"),
+        @ApiResponse(responseCode = "409", description = "Ya hay una reconciliación en curso"),
+        @ApiResponse(responseCode = "403", description = "Requiere rol admin")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping("/reconciliacion")
+    public ResponseEntity<?> ejecutarReconciliacion() {
+        if (reconciliacionService.isEnCurso()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "Ya hay una reconciliación en curso"));
+        }
+        Thread hilo = new Thread(reconciliacionService::reconciliar, "reconciliacion-uploads");
+        hilo.setDaemon(true);
+        hilo.start();
+        return ResponseEntity.accepted().build();
+    }
+
+    @Operation(
+        summary = "Firmar documentos en lote",
+        description = "Firma la lista de documentos en paralelo (app.firma.lote.hilos, por defecto uno por núcleo) y guarda los resultados en lotes. Retorna el resultado de cada documento: FIRMADO, YA_FIRMADO, NO_ENCONTRADO o ERROR."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lote procesado, con el resultado de cada documento"),
+        @ApiResponse(responseCode = "400", description = "Lista vacía o mayor al máximo permitido"),
+        @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante"),
+        @ApiResponse(responseCode = "403", description = "Requiere rol admin")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping("/documentos/firmar")
+    public ResponseEntity<FirmaLoteService.Reporte> firmarLote(
+            @Parameter(description = "IDs de los documentos a firmar", required = true)
+            @RequestBody List<Long> ids) {
+        return ResponseEntity.ok(firmaLoteService.firmar(ids));
+    }
+}
@@ -0,0 +1,198 @@
+package cl.veritrust.v1.Controller;
+
+import cl.veritrust.v1.Components.MetricasTransferencia;
+import cl.veritrust.v1.DTO.DocumentoDTO;
+import cl.veritrust.v1.DTO.SesionCargaDTO;
+import cl.veritrust.v1.Model.Documento;
+import cl.veritrust.v1.Model.SesionCarga;
+import cl.veritrust.v1.Security.SecurityUtil;
+import cl.veritrust.v1.Service.CargaReanudableService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+@CrossOrigin(origins = "http://localhost:5173")
+@RestController
+@RequestMapping("/api/documento/cargas")
+@Tag(name = "Cargas reanudables", description = "API para subir documentos grandes en fragmentos")
+public class CargaController {
+
+    @Autowired
+    private CargaReanudableService cargaService;
+    @Autowired
+    private SecurityUtil securityUtil;
+    @Autowired
+    private MetricasTransferencia metricasTransferencia;
+
+    @Operation(
+        summary = "Iniciar carga",
+        description = "Abre una sesión de carga para un documento (PDF o DOCX) del tamaño indicado. El hash SHA-256 es opcional y se verifica al finalizar."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "Sesión de carga creada"),
+        @ApiResponse(responseCode = "400", description = "Tipo de archivo no permitido o tamaño fuera de rango"),
+        @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping
+    public ResponseEntity<SesionCargaDTO> iniciarCarga(
+            @Parameter(description = "Datos del archivo a cargar", required = true)
+            @Valid @RequestBody SesionCargaDTO dto) {
+        SesionCarga sesion = cargaService.crear(
+                securityUtil.getIdUsuarioAutenticado(),
+                dto.getNombreOriginal(),
+                dto.getTipoContenido(),
+                dto.getTamanoTotal(),
+                dto.getHash());
+        return ResponseEntity.created(URI.create("/api/documento/cargas/" + sesion.getId()))
+                .body(toDTO(sesion));
+    }
+
+    @Operation(
+        summary = "Enviar fragmento",
+        description = "Escribe el cuerpo (application/octet-stream) a partir del offset indicado. El offset no puede superar los bytes ya recibidos; tras un corte se reanuda desde el offset informado por el estado de la carga."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Fragmento escrito, retorna el estado actualizado"),
+        @ApiResponse(responseCode = "400", description = "El fragmento excede el tamaño declarado o la carga ya fue finalizada"),
+        @ApiResponse(responseCode = "403", description = "La carga pertenece a otro usuario"),
+        @ApiResponse(responseCode = "404", description = "Carga no encontrada"),
+        @ApiResponse(responseCode = "409", description = "Offset inválido, el cuerpo indica desde dónde continuar")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> enviarFragmento(
+            @Parameter(description = "ID de la carga", required = true)
+            @PathVariable String id,
+            @Parameter(description = "Posición del primer byte del fragmento", required = true)
+            @RequestParam("offset") long offset,
+            HttpServletRequest request) throws IOException {
+        SesionCarga sesion = cargaService.obtener(id);
+        if (!esPropia(sesion)) {
+            return prohibido();
+        }
+        MetricasTransferencia.ConteoInputStream contenido = MetricasTransferencia.contar(request.getInputStream());
+        long inicio = System.nanoTime();
+        SesionCarga actualizada = cargaService.escribirFragmento(sesion, offset, contenido);
+        metricasTransferencia.subida(request, contenido.getBytes(), System.nanoTime() - inicio);
+        return ResponseEntity.ok(toDTO(actualizada));
+    }
+
+    @Operation(
+        summary = "Estado de la carga",
+        description = "Retorna los bytes recibidos, que es el offset desde el que se debe continuar"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Estado de la carga"),
+        @ApiResponse(responseCode = "403", description = "La carga pertenece a otro usuario"),
+        @ApiResponse(responseCode = "404", description = "Carga no encontrada")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping("/{id}")
+    public ResponseEntity<?> estadoCarga(
+            @Parameter(description = "ID de la carga", required = true)
+            @PathVariable String id) {
+        SesionCarga sesion = cargaService.obtener(id);
+        if (!esPropia(sesion)) {
+            return prohibido();
+        }
+        return ResponseEntity.ok(toDTO(sesion));
+    }
+
+    @Operation(
+        summary = "Finalizar carga",
+        description = "Verifica que se recibieron todos los bytes (y el hash, si se informó) y crea el documento"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "Documento creado"),
+        @ApiResponse(responseCode = "400", description = "Carga incompleta o hash no coincide"),
+        @ApiResponse(responseCode = "403", description = "La carga pertenece a otro usuario"),
+        @ApiResponse(responseCode = "404", description = "Carga no encontrada")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping("/{id}/finalizar")
+    public ResponseEntity<?> finalizarCarga(
+            @Parameter(description = "ID de la carga", required = true)
+            @PathVariable String id) {
+        SesionCarga sesion = cargaService.obtener(id);
+        if (!esPropia(sesion)) {
+            return prohibido();
+        }
+        Documento doc = cargaService.finalizar(id);
+        return ResponseEntity.created(URI.create("/api/documento/" + doc.getId()))
+                .body(toDTO(doc));
+    }
+
+    @Operation(
+        summary = "Cancelar carga",
+        description = "Elimina la sesión y el archivo parcial"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "Carga cancelada"),
+        @ApiResponse(responseCode = "403", description = "La carga pertenece a otro usuario"),
+        @ApiResponse(responseCode = "404", description = "Carga no encontrada")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> cancelarCarga(
+            @Parameter(description = "ID de la carga", required = true)
+            @PathVariable String id) {
+        SesionCarga sesion = cargaService.obtener(id);
+        if (!esPropia(sesion)) {
+            return prohibido();
+        }
+        cargaService.cancelar(sesion);
+        return ResponseEntity.noContent().build();
+    }
+
+    private boolean esPropia(SesionCarga sesion) {
+        return sesion.getUsuarioId().equals(securityUtil.getIdUsuarioAutenticado());
+    }
+
+    private ResponseEntity<?> prohibido() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+            .body(Map.of("error", "No tienes permiso para acceder a esta carga"));
+    }
+
+    private SesionCargaDTO toDTO(SesionCarga s) {
+        SesionCargaDTO dto = new SesionCargaDTO();
+        dto.setId(s.getId());
+        dto.setNombreOriginal(s.getNombreOriginal());
+        dto.setTipoContenido(s.getTipoContenido());
+        dto.setTamanoTotal(s.getTamanoTotal());
+        dto.setBytesRecibidos(s.getBytesRecibidos());
+        dto.setHash(s.getHashEsperado());
+        dto.setEstado(s.getEstado().name());
+        dto.setDocumentoId(s.getDocumentoId());
+        return dto;
+    }
+
+    private DocumentoDTO toDTO(Documento d) {
+        DocumentoDTO dto = new DocumentoDTO();
+        dto.setId(d.getId());
+        dto.setNombreOriginal(d.getNombreOriginal());
+        dto.setNombreAlmacenado(d.getNombreAlmacenado());
+        dto.setTipoContenido(d.getTipoContenido());
+        dto.setTamano(d.getTamano());
+        dto.setFechaSubida(d.getFechaSubida());
+        dto.setFirmado(d.isFirmado());
+        dto.setNombreFirmado(d.getNombreFirmado());
+        if (d.getUsuario() != null) dto.setUsuarioId(d.getUsuario().getId());
+        return dto;
+    }
+}
@@ -85,9 +85,9 @@ public class CompraController {
 			@Parameter(description = "ID del usuario", required = true)
 			@PathVariable Long usuarioId) {
 		try {
-			Usuario usuarioAutenticado = securityUtil.getUsuarioAutenticado();
+			Long idAutenticado = securityUtil.getIdUsuarioAutenticado();
 			
-			if (!usuarioAutenticado.getId().equals(usuarioId)) {
+			if (!idAutenticado.equals(usuarioId)) {
 				return ResponseEntity.status(HttpStatus.FORBIDDEN)
 					.body(Map.of("error", "No tienes permiso para acceder a las compras de otro usuario"));
 			}
@@ -1,21 +1,38 @@
 package cl.veritrust.v1.Controller;
 
+import cl.veritrust.v1.Model.ArchivoBlob;
 import cl.veritrust.v1.Model.Documento;
+import cl.veritrust.v1.Model.TrabajoFirma;
 import cl.veritrust.v1.Model.Usuario;
 import cl.veritrust.v1.DTO.DocumentoDTO;
+import cl.veritrust.v1.DTO.TrabajoFirmaDTO;
+import cl.veritrust.v1.Exception.CargaInvalidaException;
+import cl.veritrust.v1.Exception.CuotaExcedidaException;
+import cl.veritrust.v1.Exception.HashNoCoincideException;
+import cl.veritrust.v1.Service.ArchivoAlmacenado;
+import cl.veritrust.v1.Service.BlobService;
+import cl.veritrust.v1.Service.CuotaAlmacenamientoService;
 import cl.veritrust.v1.Service.DocumentoService;
 import cl.veritrust.v1.Service.FileStorageService;
+import cl.veritrust.v1.Service.FirmaAsincronaService;
 import cl.veritrust.v1.Service.UsuarioService;
+import cl.veritrust.v1.Components.EnvioArchivo;
+import cl.veritrust.v1.Components.ExportacionZip;
+import cl.veritrust.v1.Components.MetricasTransferencia;
+import cl.veritrust.v1.Components.MultipartEnStreaming;
 import cl.veritrust.v1.Components.FirmarDoc;
 import cl.veritrust.v1.Security.SecurityUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import java.net.URI;
 
@@ -26,6 +43,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
@@ -52,38 +70,114 @@ public class DocumentoController {
     private FirmarDoc firmarDoc;
     @Autowired
     private SecurityUtil securityUtil;
+    @Autowired
+    private BlobService blobService;
+    @Autowired
+    private EnvioArchivo envioArchivo;
+    @Autowired
+    private ExportacionZip exportacionZip;
+    @Autowired
+    private MultipartEnStreaming multipartEnStreaming;
+    @Autowired
+    private MetricasTransferencia metricasTransferencia;
+    @Autowired
+    private CuotaAlmacenamientoService cuotaAlmacenamientoService;
+    @Autowired
+    private FirmaAsincronaService firmaAsincronaService;
+
+    @Value("${app.storage.deduplicar:false}")
+    private boolean deduplicar;
+
+    @Value("${spring.servlet.multipart.max-file-size:20MB}")
+    private DataSize maxArchivo;
+
+    @Value("${app.firma.asincrona:false}")
+    private boolean firmaAsincrona;
     
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
 
     @Operation(
         summary = "Subir documento",
-        description = "Sube un documento (PDF o DOCX) al sistema y lo asocia a un usuario"
+        description = "Sube un documento (PDF o DOCX) al sistema y lo asocia a un usuario. Formulario multipart con los campos 'file' (archivo) y 'userId' (también se acepta como parámetro de la query). El archivo se escribe en disco a medida que llega."
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Documento subido exitosamente"),
         @ApiResponse(responseCode = "400", description = "Tipo de archivo no permitido o usuario no encontrado"),
+        @ApiResponse(responseCode = "413", description = "Cuota de almacenamiento del usuario excedida"),
         @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante")
     })
     @SecurityRequirement(name = "Bearer Authentication")
-    @PostMapping("/upload")
-    public ResponseEntity<DocumentoDTO> uploadFile(
-            @Parameter(description = "Archivo a subir (PDF o DOCX)", required = true)
-            @RequestParam("file") MultipartFile file,
-            @Parameter(description = "ID del usuario propietario del documento", required = true)
-            @RequestParam("userId") Long userId) {
-        String tipoContenido = file.getContentType();
-        if (tipoContenido == null ||
-                !(tipoContenido.equals("application/pdf") || tipoContenido.equals("application/vnd.openxmlformats-officedocument.wordprocessingml.document"))) {
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<DocumentoDTO> uploadFile(HttpServletRequest request) {
+        // El archivo se escribe en su ubicación final mientras se lee el cuerpo (sin temporal de multipart)
+        ArchivoBlob[] blob = new ArchivoBlob[1];
+        // Cuota: si userId llega antes del archivo se reserva la cota superior antes de escribir
+        Long[] propietario = new Long[1];
+        long[] reservado = new long[1];
+        long cotaSuperior = cotaSuperior(request, maxArchivo.toBytes());
+        MultipartEnStreaming.Formulario form = multipartEnStreaming.leer(request, "file", maxArchivo.toBytes(),
+                (nombre, tipo, campos, contenido) -> {
+                    if (nombre == null || nombre.isBlank()) {
+                        throw new CargaInvalidaException("El archivo no tiene nombre");
+                    }
+                    if (tipo == null || !(tipo.equals("application/pdf") || tipo.equals("application/vnd.openxmlformats-officedocument.wordprocessingml.document"))) {
+                        throw new CargaInvalidaException("Tipo de archivo no permitido: " + tipo);
+                    }
+                    propietario[0] = parseId(campos.get("userId"));
+                    if (propietario[0] != null) {
+                        cuotaAlmacenamientoService.reservar(propietario[0], cotaSuperior);
+                        reservado[0] = cotaSuperior;
+                    }
+                    ArchivoAlmacenado almacenado;
+                    try {
+                        if (deduplicar) {
+                            // El contenido se guarda una sola vez; el documento sólo referencia el blob
+                            blob[0] = blobService.almacenar(contenido);
+                            almacenado = new ArchivoAlmacenado(blob[0].getRuta(), blob[0].getHash(), blob[0].getTamano());
+                        } else {
+                            almacenado = fileStorageService.storeStream(nombre, contenido);
+                        }
+                    } catch (RuntimeException ex) {
+                        cuotaAlmacenamientoService.liberar(propietario[0], reservado[0]);
+                        reservado[0] = 0;
+                        throw ex;
+                    }
+                    cuotaAlmacenamientoService.ajustar(propietario[0], reservado[0], almacenado.tamano());
+                    reservado[0] = almacenado.tamano();
+                    return almacenado;
+                },
+                almacenado -> {
+                    descartarSubida(almacenado, blob[0]);
+                    cuotaAlmacenamientoService.liberar(propietario[0], reservado[0]);
+                });
+
+        ArchivoAlmacenado almacenado = form.archivo();
+        if (almacenado == null) {
             return ResponseEntity.badRequest().build();
         }
 
-        String nombreAlmacenado = fileStorageService.storeFile(file);
+        Long userId = propietario[0] != null ? propietario[0] : parseId(form.campo("userId"));
+        if (propietario[0] == null && userId != null) {
+            // userId llegó después del archivo: sólo se puede verificar la cuota con el tamaño ya escrito
+            try {
+                cuotaAlmacenamientoService.reservar(userId, almacenado.tamano());
+            } catch (CuotaExcedidaException ex) {
+                descartarSubida(almacenado, blob[0]);
+                throw ex;
+            }
+        }
 
         Documento doc = new Documento();
-        doc.setNombreOriginal(file.getOriginalFilename());
-        doc.setNombreAlmacenado(nombreAlmacenado);
-        doc.setTipoContenido(tipoContenido);
-        doc.setTamano(file.getSize());
+        if (blob[0] != null) {
+            doc.setBlob(blob[0]);
+            doc.setNombreAlmacenado(fileStorageService.nombreUnico(form.nombreArchivo()));
+        } else {
+            doc.setNombreAlmacenado(almacenado.ruta());
+        }
+        doc.setTamano(almacenado.tamano());
+        doc.setHashDocumento(almacenado.sha256());
+        doc.setNombreOriginal(form.nombreArchivo());
+        doc.setTipoContenido(form.tipoContenido());
         doc.setFechaSubida(LocalDateTime.now());
         doc.setFirmado(false);
 
@@ -91,11 +185,20 @@ public class DocumentoController {
             Usuario usuario = usuarioService.ObtenerUsuarioPorId(userId);
             doc.setUsuario(usuario);
         } catch (Exception ex) {
-            fileStorageService.deleteFile(nombreAlmacenado);
+            eliminarArchivoOriginal(doc);
+            cuotaAlmacenamientoService.liberar(userId, almacenado.tamano());
             return ResponseEntity.badRequest().build();
         }
 
-        Documento guardado = documentoService.CrearDocumento(doc);
+        Documento guardado;
+        try {
+            guardado = documentoService.CrearDocumento(doc);
+        } catch (RuntimeException ex) {
+            // sin fila que lo referencie: el archivo (o la referencia al blob) y la cuota se devuelven
+            eliminarArchivoOriginal(doc);
+            cuotaAlmacenamientoService.liberar(userId, almacenado.tamano());
+            throw ex;
+        }
         return ResponseEntity.ok(toDTO(guardado));
     }
 
@@ -143,19 +246,25 @@ public class DocumentoController {
 
     @Operation(
         summary = "Firmar documento",
-        description = "Firma un documento existente. No permite refirmar documentos ya firmados."
+        description = "Firma un documento existente. No permite refirmar documentos ya firmados. "
+                + "En modo asíncrono (asincrono=true o app.firma.asincrona) responde 202 con el trabajo "
+                + "de firma y su URL de estado en Location; la firma se ejecuta en segundo plano."
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Documento firmado exitosamente"),
+        @ApiResponse(responseCode = "202", description = "Firma encolada - consultar el estado en la URL de Location"),
         @ApiResponse(responseCode = "400", description = "El documento ya ha sido firmado previamente"),
         @ApiResponse(responseCode = "404", description = "Documento no encontrado"),
+        @ApiResponse(responseCode = "503", description = "Servicio de firma saturado, reintentar"),
         @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante")
     })
     @SecurityRequirement(name = "Bearer Authentication")
     @PostMapping("/{id}/firmar")
     public ResponseEntity<?> firmarDocumento(
             @Parameter(description = "ID del documento a firmar", required = true)
-            @PathVariable Long id) {
+            @PathVariable Long id,
+            @Parameter(description = "Encolar la firma y responder de inmediato con el trabajo")
+            @RequestParam(required = false) Boolean asincrono) {
         Documento doc = documentoService.ObtenerDocumentoPorId(id);
         
         if (doc.isFirmado()) {
@@ -164,31 +273,74 @@ public class DocumentoController {
                     .body(Map.of("mensaje", "El documento ya ha sido firmado previamente."));
         }
 
+        if (asincrono != null ? asincrono : firmaAsincrona) {
+            TrabajoFirma trabajo = firmaAsincronaService.encolar(doc, securityUtil.getIdUsuarioAutenticado());
+            TrabajoFirmaDTO dto = toDTO(trabajo);
+            return ResponseEntity.accepted()
+                    .location(URI.create(dto.getUrl()))
+                    .body(dto);
+        }
+
         Documento actualizado = firmarDoc.signDocumento(doc);
         return ResponseEntity.ok(toDTO(actualizado));
     }
 
+    @Operation(
+        summary = "Estado de un trabajo de firma",
+        description = "Retorna el estado de una firma encolada (PENDIENTE, EN_PROCESO, COMPLETADO o FALLIDO). "
+                + "Al completarse incluye el documento firmado."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Estado del trabajo"),
+        @ApiResponse(responseCode = "403", description = "El trabajo pertenece a otro usuario"),
+        @ApiResponse(responseCode = "404", description = "Trabajo no encontrado"),
+        @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping("/firmas/{trabajoId}")
+    public ResponseEntity<?> getTrabajoFirma(
+            @Parameter(description = "ID del trabajo de firma", required = true)
+            @PathVariable String trabajoId) {
+        TrabajoFirma trabajo = firmaAsincronaService.obtener(trabajoId);
+        if (trabajo.getUsuarioId() != null
+                && !trabajo.getUsuarioId().equals(securityUtil.getIdUsuarioAutenticado())
+                && !"admin".equals(securityUtil.getRolUsuarioAutenticado())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "No tienes permiso para consultar este trabajo de firma"));
+        }
+
+        TrabajoFirmaDTO dto = toDTO(trabajo);
+        if (trabajo.getEstado() == TrabajoFirma.Estado.COMPLETADO) {
+            dto.setDocumento(toDTO(documentoService.ObtenerDocumentoPorId(trabajo.getDocumentoId())));
+        }
+        return ResponseEntity.ok(dto);
+    }
+
     @Operation(
         summary = "Descargar documento",
         description = "Descarga un documento del sistema mediante su ID"
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Documento descargado exitosamente"),
+        @ApiResponse(responseCode = "206", description = "Rango parcial del documento (header Range)"),
+        @ApiResponse(responseCode = "304", description = "No modificado (If-None-Match coincide con el ETag)"),
         @ApiResponse(responseCode = "404", description = "Documento no encontrado"),
         @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante")
     })
     @SecurityRequirement(name = "Bearer Authentication")
     @GetMapping("/{id}/download")
-    public ResponseEntity<Resource> downloadFile(
+    public ResponseEntity<?> downloadFile(
             @Parameter(description = "ID del documento a descargar", required = true)
-            @PathVariable Long id) {
+            @PathVariable Long id,
+            HttpServletRequest request) throws IOException {
         Documento doc = documentoService.ObtenerDocumentoPorId(id);
-        Resource resource = fileStorageService.loadFileAsResource(doc.getNombreAlmacenado());
+        Resource resource = fileStorageService.loadDocumentoOriginal(doc);
         String archivoCodificado = URLEncoder.encode(doc.getNombreOriginal(), StandardCharsets.UTF_8);
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(doc.getTipoContenido()))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + archivoCodificado)
-                .body(resource);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(doc.getTipoContenido()));
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + archivoCodificado);
+        // Una vez firmado, el archivo de este documento ya no cambia
+        return envioArchivo.responder(request, resource, headers, doc.getHashDocumento(), doc.isFirmado());
     }
 
     @Operation(
@@ -225,7 +377,9 @@ public class DocumentoController {
             @PathVariable Long id) {
         Documento doc = documentoService.ObtenerDocumentoPorId(id);
         
-        fileStorageService.deleteFile(doc.getNombreAlmacenado());
+        if (doc.getBlob() == null) {
+            fileStorageService.deleteFile(doc.getNombreAlmacenado());
+        }
 
         if (doc.getNombreFirmado() != null) {
             fileStorageService.deleteFile(doc.getNombreFirmado());
@@ -234,61 +388,79 @@ public class DocumentoController {
             fileStorageService.deleteFileByRelativePath(doc.getRutaAlmacenamiento());
         }
 
-        documentoService.EliminarDocumento(id);
+        String blobSoltado = documentoService.EliminarDocumento(id);
+        if (doc.getTamano() != null) {
+            cuotaAlmacenamientoService.liberar(doc.getUsuario().getId(), doc.getTamano());
+        }
+
+        // El blob compartido sólo se borra cuando se va su última referencia; si una firma en
+        // curso ya lo soltó, la referencia la libera ella
+        blobService.liberar(blobSoltado);
         return ResponseEntity.noContent().build();
     }
 
     @Operation(
         summary = "Guardar documento firmado",
-        description = "Guarda un documento que ha sido firmado desde el frontend. Requiere autenticación y valida que el usuario tenga permisos."
+        description = "Guarda un documento que ha sido firmado desde el frontend. Requiere autenticación y valida que el usuario tenga permisos. Formulario multipart con 'archivo' (PDF, máx. 10MB), 'nombreOriginal', 'hash' (SHA-256, 64 caracteres), 'fechaFirma' (ISO 8601) y opcionalmente 'tipoArchivo'. El archivo se escribe en disco a medida que llega y su hash se calcula en la misma pasada."
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "201", description = "Documento firmado guardado exitosamente"),
-        @ApiResponse(responseCode = "400", description = "Datos inválidos (archivo, hash, nombre, fecha)"),
+        @ApiResponse(responseCode = "400", description = "Datos inválidos (archivo, hash, nombre, fecha) o el hash no coincide con el contenido"),
+        @ApiResponse(responseCode = "413", description = "Cuota de almacenamiento del usuario excedida"),
         @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante"),
         @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
     @SecurityRequirement(name = "Bearer Authentication")
-    @PostMapping("/firmado")
-    public ResponseEntity<?> guardarDocumentoFirmado(
-            @Parameter(description = "Archivo PDF firmado", required = true)
-            @RequestParam("archivo") MultipartFile archivo,
-            @Parameter(description = "Nombre original del archivo", required = true)
-            @RequestParam("nombreOriginal") String nombreOriginal,
-            @Parameter(description = "Hash SHA-256 del documento (64 caracteres)", required = true)
-            @RequestParam("hash") String hash,
-            @Parameter(description = "Fecha de firma en formato ISO 8601 (yyyy-MM-dd'T'HH:mm:ss)", required = true)
-            @RequestParam("fechaFirma") String fechaFirmaStr,
-            @Parameter(description = "Tipo de archivo (por defecto: pdf)")
-            @RequestParam(value = "tipoArchivo", required = false, defaultValue = "pdf") String tipoArchivo) {
+    @PostMapping(value = "/firmado", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> guardarDocumentoFirmado(HttpServletRequest request) {
         
         String rutaAlmacenamiento = null;
+        Long idAutenticado = null;
+        long reservado = 0;
+        boolean guardado = false;
         
         try {
-            Usuario usuarioAutenticado = securityUtil.getUsuarioAutenticado();
+            idAutenticado = securityUtil.getIdUsuarioAutenticado();
             
-            if (archivo == null || archivo.isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "El archivo es requerido"));
-            }
+            // La cuota se reserva antes de leer el cuerpo y se ajusta al tamaño real al guardar
+            long cotaSuperior = cotaSuperior(request, MAX_FILE_SIZE);
+            cuotaAlmacenamientoService.reservar(idAutenticado, cotaSuperior);
+            reservado = cotaSuperior;
+            Long propietario = idAutenticado;
             
-            String contentType = archivo.getContentType();
-            if (contentType == null || !contentType.equals("application/pdf")) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Solo se permiten archivos PDF"));
-            }
+            // Tipo y tamaño se validan al llegar la parte del archivo; el SHA-256 se calcula mientras se escribe
+            MultipartEnStreaming.Formulario form = multipartEnStreaming.leer(request, "archivo", MAX_FILE_SIZE,
+                    (nombre, tipo, campos, contenido) -> {
+                        if (tipo == null || !tipo.equals("application/pdf")) {
+                            throw new CargaInvalidaException("Solo se permiten archivos PDF");
+                        }
+                        return fileStorageService.storeStreamForUser(contenido, propietario);
+                    },
+                    almacenado -> fileStorageService.deleteFileByRelativePath(almacenado.ruta()));
             
-            if (archivo.getSize() > MAX_FILE_SIZE) {
+            ArchivoAlmacenado almacenado = form.archivo();
+            if (almacenado == null || almacenado.tamano() == 0) {
+                if (almacenado != null) {
+                    fileStorageService.deleteFileByRelativePath(almacenado.ruta());
+                }
                 return ResponseEntity.badRequest()
-                    .body(Map.of("error", "El archivo excede el tamaño máximo de 10MB"));
+                    .body(Map.of("error", "El archivo es requerido"));
             }
+            rutaAlmacenamiento = almacenado.ruta();
+            
+            String nombreOriginal = form.campo("nombreOriginal");
+            String hash = form.campo("hash");
+            String fechaFirmaStr = form.campo("fechaFirma");
+            String tipoArchivo = form.campo("tipoArchivo");
             
             if (hash == null || hash.trim().isEmpty() || hash.length() != 64) {
+                fileStorageService.deleteFileByRelativePath(rutaAlmacenamiento);
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "El hash SHA-256 es requerido y debe tener 64 caracteres"));
             }
             
             if (nombreOriginal == null || nombreOriginal.trim().isEmpty()) {
+                fileStorageService.deleteFileByRelativePath(rutaAlmacenamiento);
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "El nombre original del archivo es requerido"));
             }
@@ -297,41 +469,55 @@ public class DocumentoController {
             try {
                 fechaFirma = LocalDateTime.parse(fechaFirmaStr, DateTimeFormatter.ISO_DATE_TIME);
             } catch (Exception e) {
+                fileStorageService.deleteFileByRelativePath(rutaAlmacenamiento);
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "Formato de fecha inválido. Use formato ISO 8601 (yyyy-MM-dd'T'HH:mm:ss)"));
             }
             
+            // Si no coincide con el hash informado se elimina el archivo y se responde 400
+            fileStorageService.verificarHash(almacenado, hash);
+            
             String nombreOriginalSanitizado = sanitizeFileName(nombreOriginal);
             
             if (tipoArchivo == null || tipoArchivo.trim().isEmpty()) {
                 tipoArchivo = "pdf";
             }
             
-            rutaAlmacenamiento = fileStorageService.storeFileForUser(archivo, usuarioAutenticado.getId(), hash);
-            
             String nombreArchivo = rutaAlmacenamiento.substring(rutaAlmacenamiento.lastIndexOf("/") + 1);
             
+            // CrearDocumentoFirmado carga el usuario a partir del id
+            Usuario propietario = new Usuario();
+            propietario.setId(idAutenticado);
+
             Documento documento = new Documento();
-            documento.setUsuario(usuarioAutenticado);
+            documento.setUsuario(propietario);
             documento.setNombreAlmacenado(nombreArchivo);
             documento.setNombreOriginal(nombreOriginalSanitizado);
-            documento.setHashDocumento(hash);
+            documento.setHashDocumento(almacenado.sha256());
             documento.setFechaFirma(fechaFirma);
             documento.setTipoContenido("application/pdf");
-            documento.setTamano(archivo.getSize());
+            documento.setTamano(almacenado.tamano());
             documento.setRutaAlmacenamiento(rutaAlmacenamiento);
             documento.setFechaSubida(LocalDateTime.now());
             
-            Documento guardado = documentoService.CrearDocumentoFirmado(documento);
+            Documento creado = documentoService.CrearDocumentoFirmado(documento);
+            cuotaAlmacenamientoService.ajustar(idAutenticado, reservado, almacenado.tamano());
+            guardado = true;
             
             Map<String, Object> respuesta = new HashMap<>();
-            respuesta.put("id", guardado.getId());
+            respuesta.put("id", creado.getId());
             respuesta.put("mensaje", "Documento guardado exitosamente");
-            respuesta.put("nombreArchivo", guardado.getNombreAlmacenado());
-            respuesta.put("fechaFirma", guardado.getFechaFirma().format(DateTimeFormatter.ISO_DATE_TIME));
+            respuesta.put("nombreArchivo", creado.getNombreAlmacenado());
+            respuesta.put("fechaFirma", creado.getFechaFirma().format(DateTimeFormatter.ISO_DATE_TIME));
             
             return ResponseEntity.status(HttpStatus.CREATED).body(respuesta);
             
+        } catch (HashNoCoincideException | CargaInvalidaException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        } catch (CuotaExcedidaException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             if (rutaAlmacenamiento != null) {
                 try {
@@ -352,6 +538,10 @@ public class DocumentoController {
             }
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", "Error al guardar documento: " + e.getMessage()));
+        } finally {
+            if (!guardado) {
+                cuotaAlmacenamientoService.liberar(idAutenticado, reservado);
+            }
         }
     }
 
@@ -371,9 +561,9 @@ public class DocumentoController {
             @Parameter(description = "ID del usuario", required = true)
             @PathVariable Long usuarioId) {
         try {
-            Usuario usuarioAutenticado = securityUtil.getUsuarioAutenticado();
+            Long idAutenticado = securityUtil.getIdUsuarioAutenticado();
             
-            if (!usuarioAutenticado.getId().equals(usuarioId)) {
+            if (!idAutenticado.equals(usuarioId)) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(Map.of("error", "No tienes permiso para acceder a los documentos de otro usuario"));
             }
@@ -401,6 +591,8 @@ public class DocumentoController {
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Documento firmado descargado exitosamente"),
+        @ApiResponse(responseCode = "206", description = "Rango parcial del documento (header Range)"),
+        @ApiResponse(responseCode = "304", description = "No modificado (If-None-Match coincide con el ETag)"),
         @ApiResponse(responseCode = "403", description = "No tienes permiso para descargar este documento"),
         @ApiResponse(responseCode = "404", description = "Documento no encontrado"),
         @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante"),
@@ -410,13 +602,14 @@ public class DocumentoController {
     @GetMapping("/{documentoId}/download-firmado")
     public ResponseEntity<?> descargarDocumentoFirmado(
             @Parameter(description = "ID del documento firmado a descargar", required = true)
-            @PathVariable Long documentoId) {
+            @PathVariable Long documentoId,
+            HttpServletRequest request) {
         try {
-            Usuario usuarioAutenticado = securityUtil.getUsuarioAutenticado();
+            Long idAutenticado = securityUtil.getIdUsuarioAutenticado();
             
             Documento documento = documentoService.ObtenerDocumentoPorId(documentoId);
             
-            if (!documento.getUsuario().getId().equals(usuarioAutenticado.getId())) {
+            if (!documento.getUsuario().getId().equals(idAutenticado)) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(Map.of("error", "No tienes permiso para descargar este documento"));
             }
@@ -425,7 +618,7 @@ public class DocumentoController {
             if (documento.getRutaAlmacenamiento() != null) {
                 resource = fileStorageService.loadFileByRelativePath(documento.getRutaAlmacenamiento());
             } else {
-                resource = fileStorageService.loadFileAsResource(documento.getNombreAlmacenado());
+                resource = fileStorageService.loadDocumentoOriginal(documento);
             }
             
             String nombreArchivoCodificado = URLEncoder.encode(
@@ -433,11 +626,14 @@ public class DocumentoController {
                 StandardCharsets.UTF_8
             );
             
-            return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_PDF)
-                .header(HttpHeaders.CONTENT_DISPOSITION, 
-                    "attachment; filename=\"" + documento.getNombreOriginal() + "\"; filename*=UTF-8''" + nombreArchivoCodificado)
-                .body(resource);
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.set(HttpHeaders.CONTENT_DISPOSITION, 
+                "attachment; filename=\"" + documento.getNombreOriginal() + "\"; filename*=UTF-8''" + nombreArchivoCodificado);
+            // Sólo es inmutable si ya está firmado o viene de /firmado: el original sin firmar se
+            // reemplaza al firmar (DOCX convertido a PDF)
+            boolean inmutable = documento.isFirmado() || documento.getRutaAlmacenamiento() != null;
+            return envioArchivo.responder(request, resource, headers, documento.getHashDocumento(), inmutable);
             
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -445,6 +641,89 @@ public class DocumentoController {
         }
     }
 
+    @Operation(
+        summary = "Exportar documentos en ZIP",
+        description = "Descarga en un solo ZIP los documentos indicados en 'ids' o, si no se indican, todos los documentos firmados del usuario (todos sus documentos con firmados=false). El ZIP se genera mientras se envía."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "ZIP con los documentos"),
+        @ApiResponse(responseCode = "403", description = "No tienes permiso para exportar documentos de otro usuario"),
+        @ApiResponse(responseCode = "404", description = "Documento no encontrado"),
+        @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    // sin produces: los 403 responden JSON; el Content-Type del ZIP se fija en la respuesta 200
+    @GetMapping("/usuario/{usuarioId}/exportar")
+    public ResponseEntity<?> exportarDocumentos(
+            @Parameter(description = "ID del usuario", required = true)
+            @PathVariable Long usuarioId,
+            @Parameter(description = "IDs de los documentos a exportar")
+            @RequestParam(required = false) List<Long> ids,
+            @Parameter(description = "Sin ids: exportar sólo los firmados (true) o todos (false)")
+            @RequestParam(defaultValue = "true") boolean firmados,
+            HttpServletRequest request) throws IOException {
+        Long idAutenticado = securityUtil.getIdUsuarioAutenticado();
+        if (!idAutenticado.equals(usuarioId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("error", "No tienes permiso para exportar documentos de otro usuario"));
+        }
+
+        List<Documento> documentos;
+        if (ids != null && !ids.isEmpty()) {
+            documentos = ids.stream().distinct().map(documentoService::ObtenerDocumentoPorId).toList();
+            if (documentos.stream().anyMatch(d -> !d.getUsuario().getId().equals(usuarioId))) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "No tienes permiso para exportar documentos de otro usuario"));
+            }
+        } else if (firmados) {
+            documentos = documentoService.ObtenerDocumentosFirmadosPorUsuario(usuarioId);
+        } else {
+            documentos = documentoService.ObtenerDocumentosPorUsuario(usuarioId);
+        }
+
+        List<ExportacionZip.Entrada> entradas = exportacionZip.preparar(documentos);
+        StreamingResponseBody cuerpo = salida -> {
+            long inicio = System.nanoTime();
+            long bytes = exportacionZip.escribir(entradas, salida);
+            metricasTransferencia.descarga(request, "zip", bytes, System.nanoTime() - inicio);
+        };
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"documentos_" + usuarioId + ".zip\"");
+        return ResponseEntity.ok().headers(headers).body(cuerpo);
+    }
+
+    // Bytes a reservar antes de leer el cuerpo: el Content-Length acota el archivo
+    private static long cotaSuperior(HttpServletRequest request, long maximo) {
+        long largo = request.getContentLengthLong();
+        return largo > 0 ? Math.min(largo, maximo) : maximo;
+    }
+
+    private static Long parseId(String valor) {
+        try {
+            return valor != null ? Long.valueOf(valor.trim()) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void descartarSubida(ArchivoAlmacenado almacenado, ArchivoBlob blob) {
+        if (blob != null) {
+            blobService.liberar(blob.getHash());
+        } else {
+            fileStorageService.deleteFile(almacenado.ruta());
+        }
+    }
+
+    private void eliminarArchivoOriginal(Documento doc) {
+        if (doc.getBlob() != null) {
+            blobService.liberar(doc.getBlob().getHash());
+        } else {
+            fileStorageService.deleteFile(doc.getNombreAlmacenado());
+        }
+    }
+
     private String sanitizeFileName(String fileName) {
         if (fileName == null) return "documento.pdf";
         
@@ -475,6 +754,19 @@ public class DocumentoController {
         return dto;
     }
 
+    private TrabajoFirmaDTO toDTO(TrabajoFirma t) {
+        TrabajoFirmaDTO dto = new TrabajoFirmaDTO();
+        dto.setId(t.getId());
+        dto.setDocumentoId(t.getDocumentoId());
+        dto.setEstado(t.getEstado().name());
+        dto.setError(t.getError());
+        dto.setFechaCreacion(t.getFechaCreacion());
+        dto.setFechaInicio(t.getFechaInicio());
+        dto.setFechaFin(t.getFechaFin());
+        dto.setUrl("/api/documento/firmas/" + t.getId());
+        return dto;
+    }
+
     private DocumentoDTO toDTO(Documento d) {
         if (d == null) return null;
         DocumentoDTO dto = new DocumentoDTO();
@@ -1,13 +1,22 @@
 package cl.veritrust.v1.Controller;
 
 import cl.veritrust.v1.DTO.UsuarioDTO;
+import cl.veritrust.v1.Exception.ServicioSaturadoException;
 import cl.veritrust.v1.Model.Usuario;
+import cl.veritrust.v1.Security.CredencialesExecutor;
 import cl.veritrust.v1.Security.JwtUtil;
+import cl.veritrust.v1.Security.SecurityUtil;
+import cl.veritrust.v1.Security.TokenClaims;
+import cl.veritrust.v1.Service.BlobService;
+import cl.veritrust.v1.Service.CuotaAlmacenamientoService;
+import cl.veritrust.v1.Service.RevocacionTokenService;
 import cl.veritrust.v1.Service.UsuarioService;
 
 import jakarta.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -39,6 +48,21 @@ public class UsuarioController {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private RevocacionTokenService revocacionTokenService;
+
+    @Autowired
+    private CredencialesExecutor credencialesExecutor;
+
+    @Autowired
+    private CuotaAlmacenamientoService cuotaAlmacenamientoService;
+
+    @Autowired
+    private SecurityUtil securityUtil;
+
+    @Autowired
+    private BlobService blobService;
+
     @Operation(
         summary = "Obtener todos los usuarios",
         description = "Retorna una lista con todos los usuarios registrados en el sistema"
@@ -125,7 +149,8 @@ public class UsuarioController {
     public void deleteUsuario(
             @Parameter(description = "ID del usuario a eliminar", required = true)
             @PathVariable Long id) {
-        usuarioService.EliminarUsuario(id);
+        // los blobs se liberan fuera de la transacción del borrado, como al eliminar un documento
+        usuarioService.EliminarUsuario(id).forEach(blobService::liberar);
     }
 
     @Operation(
@@ -134,25 +159,29 @@ public class UsuarioController {
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Login exitoso - Retorna token JWT y datos del usuario"),
-        @ApiResponse(responseCode = "401", description = "Credenciales incorrectas")
+        @ApiResponse(responseCode = "401", description = "Credenciales incorrectas"),
+        @ApiResponse(responseCode = "503", description = "Servicio de autenticación saturado, reintentar")
     })
     @PostMapping("/login")
     public ResponseEntity<?> login(
             @Parameter(description = "Credenciales de acceso (RUT y contraseña)", required = true)
             @RequestBody UsuarioDTO dto) {
         try {
-            authenticationManager.authenticate(
+            // BCrypt corre en el pool acotado de credenciales, no en el hilo de Tomcat
+            credencialesExecutor.ejecutar(() -> authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
                             dto.getRut(),
                             dto.getContraseña()
                     )
-            );
+            ));
 
             Usuario usuario = usuarioService.ObtenerUsuarioPorRut(dto.getRut());
 
             String token = jwtUtil.generateToken(
                     usuario.getRut(),
-                    usuario.getRol()
+                    usuario.getRol(),
+                    usuario.getId(),
+                    revocacionTokenService.versionTokens(usuario.getId())
             );
 
             return ResponseEntity.ok(
@@ -162,6 +191,11 @@ public class UsuarioController {
                     )
             );
 
+        } catch (ServicioSaturadoException e) {
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("mensaje", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity
                     .status(401)
@@ -169,6 +203,53 @@ public class UsuarioController {
         }
     }
 
+    @Operation(
+        summary = "Cerrar sesión",
+        description = "Revoca el token JWT enviado en el header Authorization. El token deja de ser aceptado aunque no haya expirado."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Sesión cerrada exitosamente"),
+        @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(
+            @Parameter(hidden = true)
+            @RequestHeader("Authorization") String authHeader) {
+        TokenClaims claims = authHeader.startsWith("Bearer ")
+                ? jwtUtil.validarToken(authHeader.substring(7))
+                : null;
+        if (claims == null) {
+            return ResponseEntity
+                    .status(401)
+                    .body(Map.of("mensaje", "Token inválido"));
+        }
+        revocacionTokenService.revocarToken(claims);
+        return ResponseEntity.ok(Map.of("mensaje", "Sesión cerrada"));
+    }
+
+    @Operation(
+        summary = "Uso de almacenamiento",
+        description = "Retorna los bytes usados por los documentos del usuario (incluye cargas en curso), el límite de la cuota y lo disponible. Límite 0 significa sin límite."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Uso de almacenamiento del usuario"),
+        @ApiResponse(responseCode = "403", description = "Solo el propio usuario o un admin pueden consultarlo"),
+        @ApiResponse(responseCode = "401", description = "No autorizado - Token JWT inválido o faltante")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping("/{id}/almacenamiento")
+    public ResponseEntity<?> getAlmacenamiento(
+            @Parameter(description = "ID del usuario", required = true)
+            @PathVariable Long id) {
+        if (!id.equals(securityUtil.getIdUsuarioAutenticado())
+                && !"admin".equals(securityUtil.getRolUsuarioAutenticado())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "No tienes permiso para consultar el almacenamiento de otro usuario"));
+        }
+        return ResponseEntity.ok(cuotaAlmacenamientoService.obtenerUso(id));
+    }
+
     private UsuarioDTO toDTO(Usuario u) {
         UsuarioDTO dto = new UsuarioDTO();
         dto.setId(u.getId());
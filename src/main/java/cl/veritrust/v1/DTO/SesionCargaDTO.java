@@ -0,0 +1,51 @@
+package cl.veritrust.v1.DTO;
+
+import jakarta.validation.constraints.*;
+
+public class SesionCargaDTO {
+
+    private String id;
+
+    @NotBlank(message = "El nombre original no puede estar vacío")
+    private String nombreOriginal;
+
+    @NotBlank(message = "El tipo de contenido no puede estar vacío")
+    private String tipoContenido;
+
+    @NotNull(message = "El tamaño total no puede ser nulo")
+    @Positive(message = "El tamaño total debe ser mayor a cero")
+    private Long tamanoTotal;
+
+    private Long bytesRecibidos;
+
+    @Pattern(regexp = "^[0-9a-fA-F]{64}$", message = "El hash debe ser un SHA-256 en hexadecimal")
+    private String hash;
+
+    private String estado;
+
+    private Long documentoId;
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getNombreOriginal() { return nombreOriginal; }
+    public void setNombreOriginal(String nombreOriginal) { this.nombreOriginal = nombreOriginal; }
+
+    public String getTipoContenido() { return tipoContenido; }
+    public void setTipoContenido(String tipoContenido) { this.tipoContenido = tipoContenido; }
+
+    public Long getTamanoTotal() { return tamanoTotal; }
+    public void setTamanoTotal(Long tamanoTotal) { this.tamanoTotal = tamanoTotal; }
+
+    public Long getBytesRecibidos() { return bytesRecibidos; }
+    public void setBytesRecibidos(Long bytesRecibidos) { this.bytesRecibidos = bytesRecibidos; }
+
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+
+    public Long getDocumentoId() { return documentoId; }
+    public void setDocumentoId(Long documentoId) { this.documentoId = documentoId; }
+}
@@ -0,0 +1,43 @@
+package cl.veritrust.v1.DTO;
+
+import java.time.LocalDateTime;
+
+public class TrabajoFirmaDTO {
+
+    private String id;
+    private Long documentoId;
+    private String estado;
+    private String error;
+    private LocalDateTime fechaCreacion;
+    private LocalDateTime fechaInicio;
+    private LocalDateTime fechaFin;
+    private String url;
+    private DocumentoDTO documento;
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Long getDocumentoId() { return documentoId; }
+    public void setDocumentoId(Long documentoId) { this.documentoId = documentoId; }
+
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public LocalDateTime getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(LocalDateTime fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+
+    public LocalDateTime getFechaInicio() { return fechaInicio; }
+    public void setFechaInicio(LocalDateTime fechaInicio) { this.fechaInicio = fechaInicio; }
+
+    public LocalDateTime getFechaFin() { return fechaFin; }
+    public void setFechaFin(LocalDateTime fechaFin) { this.fechaFin = fechaFin; }
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public DocumentoDTO getDocumento() { return documento; }
+    public void setDocumento(DocumentoDTO documento) { this.documento = documento; }
+}
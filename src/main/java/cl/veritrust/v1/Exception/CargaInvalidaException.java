@@ -0,0 +1,5 @@
+package cl.veritrust.v1.Exception;
+ 
+public class CargaInvalidaException extends RuntimeException {
+    public CargaInvalidaException(String message) { super(message); }
+}
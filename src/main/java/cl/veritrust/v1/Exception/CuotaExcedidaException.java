@@ -0,0 +1,5 @@
+package cl.veritrust.v1.Exception;
+ 
+public class CuotaExcedidaException extends RuntimeException {
+    public CuotaExcedidaException(String message) { super(message); }
+}
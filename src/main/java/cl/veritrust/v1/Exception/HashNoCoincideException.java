@@ -0,0 +1,5 @@
+package cl.veritrust.v1.Exception;
+ 
+public class HashNoCoincideException extends RuntimeException {
+    public HashNoCoincideException(String message) { super(message); }
+}
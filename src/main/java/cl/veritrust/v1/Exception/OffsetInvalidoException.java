@@ -0,0 +1,15 @@
+package cl.veritrust.v1.Exception;
+ 
+/**
+ * El fragmento no continúa la carga: el cliente debe reanudar desde {@link #getOffsetEsperado()}.
+ */
+public class OffsetInvalidoException extends RuntimeException {
+    private final long offsetEsperado;
+
+    public OffsetInvalidoException(long offsetEsperado) {
+        super("Offset inválido, la carga continúa desde el byte " + offsetEsperado);
+        this.offsetEsperado = offsetEsperado;
+    }
+
+    public long getOffsetEsperado() { return offsetEsperado; }
+}
@@ -1,5 +1,6 @@
 package cl.veritrust.v1.Exception;
  
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +27,43 @@ public class RestExceptionHandler {
             .body(Map.of("timestamp", Instant.now(), "message", ex.getMessage()));
     }
  
+    @Hidden
+    @ExceptionHandler(HashNoCoincideException.class)
+    public ResponseEntity<?> handleHash(HashNoCoincideException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+            .body(Map.of("timestamp", Instant.now(), "message", ex.getMessage()));
+    }
+ 
+    @Hidden
+    @ExceptionHandler(CargaInvalidaException.class)
+    public ResponseEntity<?> handleCarga(CargaInvalidaException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+            .body(Map.of("timestamp", Instant.now(), "message", ex.getMessage()));
+    }
+ 
+    @Hidden
+    @ExceptionHandler(OffsetInvalidoException.class)
+    public ResponseEntity<?> handleOffset(OffsetInvalidoException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+            .body(Map.of("timestamp", Instant.now(), "message", ex.getMessage(),
+                    "offset", ex.getOffsetEsperado()));
+    }
+ 
+    @Hidden
+    @ExceptionHandler(CuotaExcedidaException.class)
+    public ResponseEntity<?> handleCuota(CuotaExcedidaException ex) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+            .body(Map.of("timestamp", Instant.now(), "message", ex.getMessage()));
+    }
+ 
+    @Hidden
+    @ExceptionHandler(ServicioSaturadoException.class)
+    public ResponseEntity<?> handleSaturado(ServicioSaturadoException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(Map.of("timestamp", Instant.now(), "message", ex.getMessage()));
+    }
+ 
     @Hidden
     @ExceptionHandler(Exception.class)
     public ResponseEntity<?> handleOther(Exception ex) {
@@ -0,0 +1,5 @@
+package cl.veritrust.v1.Exception;
+ 
+public class ServicioSaturadoException extends RuntimeException {
+    public ServicioSaturadoException(String message) { super(message); }
+}
@@ -0,0 +1,33 @@
+package cl.veritrust.v1.Model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Contenido almacenado una sola vez, identificado por su SHA-256. Varios documentos pueden
+ * apuntar al mismo blob; el archivo se elimina cuando referencias llega a cero.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "archivo_blob")
+public class ArchivoBlob {
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false, length = 500)
+    private String ruta;
+
+    private Long tamano;
+
+    @Column(nullable = false)
+    private Integer referencias;
+
+    private LocalDateTime fechaCreacion;
+}
@@ -14,7 +14,10 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "documento")
+@Table(name = "documento", indexes = {
+    @Index(name = "idx_documento_nombre_firmado", columnList = "nombreFirmado"),
+    @Index(name = "idx_documento_ruta_almacenamiento", columnList = "ruta_almacenamiento")
+})
 public class Documento {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -45,6 +48,11 @@ public class Documento {
     @Column(name = "ruta_almacenamiento", length = 500)
     private String rutaAlmacenamiento;
 
+    // Contenido compartido (almacenamiento deduplicado); null si el archivo es propio
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "blob_hash")
+    private ArchivoBlob blob;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "usuario_id", nullable = false)
     @OnDelete(action = OnDeleteAction.CASCADE)
@@ -0,0 +1,56 @@
+package cl.veritrust.v1.Model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Carga reanudable en curso. Los fragmentos se escriben directo en el archivo final
+ * (nombreAlmacenado); bytesRecibidos es el prefijo contiguo ya escrito y es el offset
+ * desde el que el cliente debe continuar.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "sesion_carga")
+public class SesionCarga {
+
+    public enum Estado { EN_CURSO, FINALIZADA }
+
+    @Id
+    @Column(name = "sesion_carga_id", length = 36)
+    private String id;
+
+    @Column(name = "usuario_id", nullable = false)
+    private Long usuarioId;
+
+    private String nombreOriginal;
+
+    private String tipoContenido;
+
+    @Column(nullable = false, unique = true)
+    private String nombreAlmacenado;
+
+    @Column(nullable = false)
+    private Long tamanoTotal;
+
+    @Column(nullable = false)
+    private Long bytesRecibidos;
+
+    @Column(length = 64)
+    private String hashEsperado;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Estado estado;
+
+    private Long documentoId;
+
+    private LocalDateTime fechaCreacion;
+
+    private LocalDateTime fechaActualizacion;
+}
@@ -0,0 +1,36 @@
+package cl.veritrust.v1.Model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entrada de la lista de revocación de JWT. Revoca un token puntual (jti) o todos los
+ * tokens de un usuario emitidos hasta revocadoEn. Se descarta una vez pasado expiraEn.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "token_revocado")
+public class TokenRevocado {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "token_revocado_id")
+    private Long id;
+
+    @Column(length = 36)
+    private String jti;
+
+    @Column(name = "usuario_id")
+    private Long usuarioId;
+
+    @Column(nullable = false)
+    private LocalDateTime revocadoEn;
+
+    @Column(nullable = false)
+    private LocalDateTime expiraEn;
+}
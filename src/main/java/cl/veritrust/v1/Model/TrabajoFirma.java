@@ -0,0 +1,50 @@
+package cl.veritrust.v1.Model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Firma de un documento ejecutada en segundo plano. El estado se persiste para que los trabajos
+ * pendientes o interrumpidos se retomen después de un reinicio.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "trabajo_firma", indexes = {
+    @Index(name = "idx_trabajo_firma_estado", columnList = "estado"),
+    @Index(name = "idx_trabajo_firma_documento", columnList = "documento_id")
+})
+public class TrabajoFirma {
+
+    public enum Estado { PENDIENTE, EN_PROCESO, COMPLETADO, FALLIDO }
+
+    @Id
+    @Column(name = "trabajo_firma_id", length = 36)
+    private String id;
+
+    @Column(name = "documento_id", nullable = false)
+    private Long documentoId;
+
+    @Column(name = "usuario_id")
+    private Long usuarioId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Estado estado;
+
+    private int intentos;
+
+    @Column(length = 1000)
+    private String error;
+
+    private LocalDateTime fechaCreacion;
+
+    private LocalDateTime fechaInicio;
+
+    private LocalDateTime fechaFin;
+}
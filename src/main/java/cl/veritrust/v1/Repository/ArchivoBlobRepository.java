@@ -0,0 +1,39 @@
+package cl.veritrust.v1.Repository;
+
+import cl.veritrust.v1.Model.ArchivoBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivoBlobRepository extends JpaRepository<ArchivoBlob, String> {
+
+	// alta del blob o una referencia más si ya existe, en una sola sentencia atómica (MySQL)
+	@Transactional
+	@Modifying
+	@Query(value = "INSERT INTO archivo_blob (hash, ruta, tamano, referencias, fecha_creacion) "
+			+ "VALUES (:hash, :ruta, :tamano, 1, :fecha) "
+			+ "ON DUPLICATE KEY UPDATE referencias = referencias + 1", nativeQuery = true)
+	int registrarReferencia(@Param("hash") String hash, @Param("ruta") String ruta,
+			@Param("tamano") Long tamano, @Param("fecha") LocalDateTime fecha);
+
+	@Transactional
+	@Modifying
+	@Query("UPDATE ArchivoBlob b SET b.referencias = b.referencias - 1 WHERE b.hash = :hash AND b.referencias > 0")
+	int liberarReferencia(@Param("hash") String hash);
+
+	@Transactional
+	@Modifying
+	@Query("DELETE FROM ArchivoBlob b WHERE b.hash = :hash AND b.referencias = 0")
+	int eliminarSinReferencias(@Param("hash") String hash);
+
+	@Query("SELECT b.hash FROM ArchivoBlob b WHERE b.hash IN :hashes")
+	List<String> findHashesEn(@Param("hashes") Collection<String> hashes);
+}
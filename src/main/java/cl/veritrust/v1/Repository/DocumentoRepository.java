@@ -1,7 +1,13 @@
 package cl.veritrust.v1.Repository;
 import cl.veritrust.v1.Model.Documento;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,4 +17,52 @@ public interface DocumentoRepository extends JpaRepository<Documento, Long> {
 	
 	// consulta para obtener documentos firmados por usuario ordenados por fecha de firma descendente
 	List<Documento> findByUsuario_IdAndFirmadoTrueOrderByFechaFirmaDesc(Long usuarioId);
-}
\ No newline at end of file
+
+	// archivos que referencia un documento, sin cargar la entidad (reconciliación)
+	interface ArchivosDocumento {
+		Long getId();
+		String getNombreAlmacenado();
+		String getNombreFirmado();
+		String getRutaAlmacenamiento();
+		String getRutaBlob();
+	}
+
+	// paginación por clave: cada página parte del último id visto
+	@Query("SELECT d.id AS id, d.nombreAlmacenado AS nombreAlmacenado, d.nombreFirmado AS nombreFirmado, "
+			+ "d.rutaAlmacenamiento AS rutaAlmacenamiento, b.ruta AS rutaBlob "
+			+ "FROM Documento d LEFT JOIN d.blob b WHERE d.id > :desde ORDER BY d.id")
+	List<ArchivosDocumento> findArchivosDesde(@Param("desde") Long desde, Pageable pagina);
+
+	@Query("SELECT d.nombreAlmacenado FROM Documento d WHERE d.nombreAlmacenado IN :nombres")
+	List<String> findNombresAlmacenadosEn(@Param("nombres") Collection<String> nombres);
+
+	@Query("SELECT d.nombreFirmado FROM Documento d WHERE d.nombreFirmado IN :nombres")
+	List<String> findNombresFirmadosEn(@Param("nombres") Collection<String> nombres);
+
+	@Query("SELECT d.rutaAlmacenamiento FROM Documento d WHERE d.rutaAlmacenamiento IN :rutas")
+	List<String> findRutasAlmacenamientoEn(@Param("rutas") Collection<String> rutas);
+
+	interface UsoUsuario {
+		Long getUsuarioId();
+		Long getBytes();
+	}
+
+	@Query("SELECT d.usuario.id AS usuarioId, SUM(d.tamano) AS bytes FROM Documento d "
+			+ "WHERE d.tamano IS NOT NULL GROUP BY d.usuario.id")
+	List<UsoUsuario> sumarTamanoPorUsuario();
+
+	interface BlobDocumento {
+		Long getId();
+		String getHash();
+	}
+
+	@Query("SELECT d.id AS id, b.hash AS hash FROM Documento d JOIN d.blob b WHERE d.usuario.id = :usuarioId")
+	List<BlobDocumento> findBlobsPorUsuario(@Param("usuarioId") Long usuarioId);
+
+	// suelta el blob sólo si la fila todavía lo referencia: con dos solicitudes a la vez, sólo
+	// una obtiene 1 y es la única que debe liberar la referencia
+	@Transactional
+	@Modifying
+	@Query(value = "UPDATE documento SET blob_hash = NULL WHERE documento_id = :id AND blob_hash = :hash", nativeQuery = true)
+	int soltarBlob(@Param("id") Long id, @Param("hash") String hash);
+}
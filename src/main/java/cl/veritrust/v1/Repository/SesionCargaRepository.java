@@ -0,0 +1,42 @@
+package cl.veritrust.v1.Repository;
+
+import cl.veritrust.v1.Model.SesionCarga;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SesionCargaRepository extends JpaRepository<SesionCarga, String> {
+
+	// el offset sólo avanza (dos fragmentos concurrentes no lo hacen retroceder)
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE SesionCarga s SET s.bytesRecibidos = :fin, s.fechaActualizacion = :fecha "
+			+ "WHERE s.id = :id AND s.bytesRecibidos < :fin")
+	int avanzarOffset(@Param("id") String id, @Param("fin") long fin, @Param("fecha") LocalDateTime fecha);
+
+	// serializa finalizaciones concurrentes de la misma sesión
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT s FROM SesionCarga s WHERE s.id = :id")
+	Optional<SesionCarga> findParaFinalizar(@Param("id") String id);
+
+	List<SesionCarga> findByFechaActualizacionBefore(LocalDateTime fecha);
+
+	@Query("SELECT s.nombreAlmacenado FROM SesionCarga s WHERE s.nombreAlmacenado IN :nombres")
+	List<String> findNombresAlmacenadosEn(@Param("nombres") Collection<String> nombres);
+
+	// bytes declarados por las cargas en el estado indicado, por usuario (cuotas)
+	@Query("SELECT s.usuarioId AS usuarioId, SUM(s.tamanoTotal) AS bytes FROM SesionCarga s "
+			+ "WHERE s.estado = :estado GROUP BY s.usuarioId")
+	List<DocumentoRepository.UsoUsuario> sumarTamanoPorUsuario(@Param("estado") SesionCarga.Estado estado);
+}
@@ -0,0 +1,21 @@
+package cl.veritrust.v1.Repository;
+
+import cl.veritrust.v1.Model.TokenRevocado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TokenRevocadoRepository extends JpaRepository<TokenRevocado, Long> {
+
+    List<TokenRevocado> findByExpiraEnAfter(LocalDateTime fecha);
+
+    @Modifying
+    @Query("DELETE FROM TokenRevocado t WHERE t.expiraEn < :fecha")
+    int eliminarExpirados(@Param("fecha") LocalDateTime fecha);
+}
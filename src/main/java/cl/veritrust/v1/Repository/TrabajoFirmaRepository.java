@@ -0,0 +1,43 @@
+package cl.veritrust.v1.Repository;
+
+import cl.veritrust.v1.Model.TrabajoFirma;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TrabajoFirmaRepository extends JpaRepository<TrabajoFirma, String> {
+
+	Optional<TrabajoFirma> findFirstByDocumentoIdAndEstadoIn(Long documentoId, Collection<TrabajoFirma.Estado> estados);
+
+	List<TrabajoFirma> findByEstadoOrderByFechaCreacionAsc(TrabajoFirma.Estado estado);
+
+	// toma el trabajo sólo si sigue pendiente: un trabajo nunca se procesa dos veces a la vez
+	@Transactional
+	@Modifying
+	@Query("UPDATE TrabajoFirma t SET t.estado = :enProceso, t.fechaInicio = :fecha, t.intentos = t.intentos + 1 "
+			+ "WHERE t.id = :id AND t.estado = :pendiente")
+	int tomar(@Param("id") String id, @Param("fecha") LocalDateTime fecha,
+			@Param("pendiente") TrabajoFirma.Estado pendiente, @Param("enProceso") TrabajoFirma.Estado enProceso);
+
+	// trabajos que quedaron en proceso cuando se detuvo la aplicación
+	@Transactional
+	@Modifying
+	@Query("UPDATE TrabajoFirma t SET t.estado = :pendiente WHERE t.estado = :enProceso")
+	int reiniciarEnProceso(@Param("enProceso") TrabajoFirma.Estado enProceso,
+			@Param("pendiente") TrabajoFirma.Estado pendiente);
+
+	@Transactional
+	@Modifying
+	@Query("DELETE FROM TrabajoFirma t WHERE t.estado IN :estados AND t.fechaFin < :limite")
+	int eliminarTerminadosAntesDe(@Param("estados") Collection<TrabajoFirma.Estado> estados,
+			@Param("limite") LocalDateTime limite);
+}
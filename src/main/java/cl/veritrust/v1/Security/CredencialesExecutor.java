@@ -0,0 +1,95 @@
+package cl.veritrust.v1.Security;
+
+import cl.veritrust.v1.Exception.ServicioSaturadoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool acotado donde se ejecutan las operaciones BCrypt (login y hash de contraseñas), para
+ * que una ráfaga de logins no consuma los hilos de Tomcat del resto de los endpoints.
+ * Con el pool y la cola llenos la solicitud se rechaza de inmediato con {@link ServicioSaturadoException}.
+ */
+@Component
+public class CredencialesExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+    private final Timer latencia;
+    private final Counter rechazos;
+
+    public CredencialesExecutor(
+            @Value("${app.security.credenciales.hilos:0}") int hilos,
+            @Value("${app.security.credenciales.cola:100}") int capacidadCola,
+            @Value("${app.security.credenciales.timeout-ms:10000}") long timeoutMs,
+            MeterRegistry meterRegistry
+    ) {
+        int tamano = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                tamano, tamano,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                r -> {
+                    Thread t = new Thread(r, "credenciales-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.timeoutMs = timeoutMs;
+
+        this.latencia = Timer.builder("veritrust.credenciales.hash")
+                .description("Latencia de verificación/generación de hashes de contraseña")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rechazos = Counter.builder("veritrust.credenciales.rechazos")
+                .description("Solicitudes rechazadas por pool de credenciales saturado")
+                .register(meterRegistry);
+        Gauge.builder("veritrust.credenciales.cola", executor, e -> e.getQueue().size())
+                .description("Tareas de credenciales en espera")
+                .register(meterRegistry);
+        Gauge.builder("veritrust.credenciales.activas", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Tareas de credenciales en ejecución")
+                .register(meterRegistry);
+    }
+
+    public <T> T ejecutar(Callable<T> tarea) {
+        Future<T> futuro;
+        try {
+            futuro = executor.submit(() -> latencia.recordCallable(tarea));
+        } catch (RejectedExecutionException e) {
+            rechazos.increment();
+            throw new ServicioSaturadoException("Servicio de autenticación saturado, intente nuevamente");
+        }
+
+        try {
+            return futuro.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            futuro.cancel(true);
+            rechazos.increment();
+            throw new ServicioSaturadoException("Tiempo de espera de autenticación agotado, intente nuevamente");
+        } catch (InterruptedException e) {
+            futuro.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServicioSaturadoException("Autenticación interrumpida");
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException) throw (RuntimeException) causa;
+            if (causa instanceof Error) throw (Error) causa;
+            throw new IllegalStateException(causa);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -1,9 +1,11 @@
 package cl.veritrust.v1.Security;
 
+import cl.veritrust.v1.Service.RevocacionTokenService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -19,10 +21,22 @@ public class JwtFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
+    private final RevocacionTokenService revocacionTokenService;
+    private final boolean stateless;
 
-    public JwtFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtFilter(
+            JwtUtil jwtUtil,
+            UserDetailsService userDetailsService,
+            PrincipalCache principalCache,
+            RevocacionTokenService revocacionTokenService,
+            @Value("${app.security.jwt.stateless:false}") boolean stateless
+    ) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
+        this.revocacionTokenService = revocacionTokenService;
+        this.stateless = stateless;
     }
 
     @Override
@@ -47,20 +61,24 @@ public class JwtFilter extends OncePerRequestFilter {
         }
 
         String authHeader = request.getHeader("Authorization");
-        String token = null;
-        String username = null;
+        TokenClaims claims = null;
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            token = authHeader.substring(7);
-            try {
-                username = jwtUtil.extractUsername(token);
-            } catch (Exception ignored) {}
+            claims = jwtUtil.validarToken(authHeader.substring(7));
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if (claims != null && claims.subject() != null
+                && !revocacionTokenService.estaRevocado(claims)
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails;
+            if (stateless && claims.usuarioId() != null && claims.rol() != null) {
+                // Modo sin estado: el principal sale sólo de los claims verificados, sin consultar la BD
+                userDetails = UsuarioPrincipal.desdeClaims(claims);
+            } else {
+                userDetails = principalCache.obtener(claims.subject(), userDetailsService::loadUserByUsername);
+            }
 
-            if (jwtUtil.validateToken(token, userDetails.getUsername())) {
+            if (userDetails.getUsername().equals(claims.subject())) {
                 UsernamePasswordAuthenticationToken authToken =
                         new UsernamePasswordAuthenticationToken(
                                 userDetails, null, userDetails.getAuthorities()
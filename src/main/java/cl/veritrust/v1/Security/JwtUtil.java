@@ -7,17 +7,40 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
 
     private static final String SECRET = "VeriTrustClaveSecretaParaFirmarTokensMuySegura2025";
-    private static final Key SECRET_KEY = Keys.hmacShaKeyFor(SECRET.getBytes());
+    static final Key SECRET_KEY = Keys.hmacShaKeyFor(SECRET.getBytes());
     private static final long EXPIRATION_TIME = 86400000;
 
+    static final String CLAIM_ROL = "rol";
+    static final String CLAIM_USUARIO_ID = "uid";
+    // instante de la última revocación de los tokens del usuario al emitir este (ver RevocacionTokenService)
+    static final String CLAIM_VERSION = "ver";
+
+    // El parser es inmutable y thread-safe: se construye una sola vez
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(SECRET_KEY)
+            .build();
+
     public String generateToken(String username, String rol) {
+        return generateToken(username, rol, null);
+    }
+
+    public String generateToken(String username, String rol, Long usuarioId) {
+        return generateToken(username, rol, usuarioId, 0L);
+    }
+
+    public String generateToken(String username, String rol, Long usuarioId, long version) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("rol", rol);
+        claims.put(CLAIM_ROL, rol);
+        if (usuarioId != null) {
+            claims.put(CLAIM_USUARIO_ID, usuarioId);
+            claims.put(CLAIM_VERSION, version);
+        }
         return createToken(claims, username);
     }
 
@@ -25,15 +48,33 @@ public class JwtUtil {
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
+                .setId(UUID.randomUUID().toString())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
                 .signWith(SECRET_KEY, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    public long getExpirationMillis() {
+        return EXPIRATION_TIME;
+    }
+
+    /**
+     * Parsea y verifica el token una única vez (firma HMAC y expiración).
+     * Retorna null si el token es inválido, está mal formado o expiró.
+     */
+    public TokenClaims validarToken(String token) {
+        try {
+            // parseClaimsJws ya rechaza los tokens expirados (ExpiredJwtException)
+            return TokenClaims.from(extractAllClaims(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     public boolean validateToken(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
+        TokenClaims claims = validarToken(token);
+        return claims != null && claims.subject().equals(username);
     }
 
     public String extractUsername(String token) {
@@ -41,14 +82,6 @@ public class JwtUtil {
     }
 
     public Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractAllClaims(token).getExpiration().before(new Date());
+        return parser.parseClaimsJws(token).getBody();
     }
-}
\ No newline at end of file
+}
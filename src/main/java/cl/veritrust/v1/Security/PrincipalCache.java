@@ -0,0 +1,58 @@
+package cl.veritrust.v1.Security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Cache acotada (tamaño máximo + TTL) de los {@link UserDetails} que usa {@link JwtFilter},
+ * indexada por RUT. Evita un SELECT a usuario por cada request autenticado.
+ * Las métricas quedan disponibles en /actuator/metrics/cache.gets?tag=cache:principales
+ */
+@Component
+public class PrincipalCache {
+
+    private final Cache<String, UserDetails> cache;
+
+    public PrincipalCache(
+            @Value("${app.security.principal-cache.max-size:10000}") long maxSize,
+            @Value("${app.security.principal-cache.ttl-seconds:300}") long ttlSeconds,
+            MeterRegistry meterRegistry
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "principales");
+    }
+
+    public UserDetails obtener(String rut, Function<String, UserDetails> cargador) {
+        return cache.get(rut, cargador);
+    }
+
+    public void invalidar(String rut) {
+        if (rut == null) return;
+        cache.invalidate(rut);
+
+        // Si hay una transacción en curso se invalida nuevamente al hacer commit, para que
+        // un request concurrente no vuelva a cachear la fila antigua antes de que se confirme.
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(rut);
+                }
+            });
+        }
+    }
+}
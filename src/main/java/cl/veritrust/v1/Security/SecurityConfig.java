@@ -1,5 +1,6 @@
 package cl.veritrust.v1.Security;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -8,12 +9,18 @@ import org.springframework.security.authentication.dao.DaoAuthenticationProvider
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 public class SecurityConfig {
 
@@ -31,6 +38,7 @@ public class SecurityConfig {
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html", "/swagger-ui/index.html").permitAll()
                 .requestMatchers(HttpMethod.POST, "/usuarios/login", "/usuarios").permitAll()
                 .requestMatchers(HttpMethod.GET, "/servicios/**").permitAll()
+                .requestMatchers("/api/admin/**").hasRole("admin")
                 .anyRequest().authenticated()
             )
             .sessionManagement(sess ->
@@ -41,18 +49,37 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Los hashes nuevos se guardan con prefijo {bcrypt} o {argon2} según app.security.password.algoritmo.
+     * Los hashes antiguos (BCrypt sin prefijo) se siguen validando y se re-hashean al iniciar sesión
+     * cuando el algoritmo o el costo configurado cambian (ver UsuarioService.updatePassword).
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${app.security.password.algoritmo:bcrypt}") String algoritmo,
+            @Value("${app.security.password.bcrypt-cost:10}") int bcryptCost,
+            @Value("${app.security.password.argon2.memoria-kb:19456}") int argon2MemoriaKb,
+            @Value("${app.security.password.argon2.iteraciones:2}") int argon2Iteraciones,
+            @Value("${app.security.password.argon2.paralelismo:1}") int argon2Paralelismo
+    ) {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(bcryptCost));
+        encoders.put("argon2", new Argon2PasswordEncoder(16, 32, argon2Paralelismo, argon2MemoriaKb, argon2Iteraciones));
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algoritmo, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(encoders.get("bcrypt"));
+        return encoder;
     }
 
     @Bean
     public DaoAuthenticationProvider authenticationProvider(
             UserDetailsService userDetailsService,
+            UserDetailsPasswordService userDetailsPasswordService,
             PasswordEncoder passwordEncoder
     ) {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
         provider.setUserDetailsService(userDetailsService);
+        provider.setUserDetailsPasswordService(userDetailsPasswordService);
         provider.setPasswordEncoder(passwordEncoder);
         return provider;
     }
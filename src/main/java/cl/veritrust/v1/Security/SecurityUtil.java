@@ -7,47 +7,67 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 @Component
 public class SecurityUtil {
     
+    private static final String ATRIBUTO_USUARIO = SecurityUtil.class.getName() + ".USUARIO";
+
     @Autowired
     private UsuarioService usuarioService;
     
+    /**
+     * Usuario autenticado como entidad. Se resuelve a lo más una vez por request (queda
+     * memorizado como atributo del request); para chequeos de propiedad basta con
+     * {@link #getIdUsuarioAutenticado()}, que no consulta la base de datos.
+     */
     public Usuario getUsuarioAutenticado() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        
-        if (authentication == null || !authentication.isAuthenticated()) {
-            throw new RuntimeException("Usuario no autenticado");
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            Object memorizado = request.getAttribute(ATRIBUTO_USUARIO, RequestAttributes.SCOPE_REQUEST);
+            if (memorizado instanceof Usuario) {
+                return (Usuario) memorizado;
+            }
         }
-        
-        Object principal = authentication.getPrincipal();
-        String rut = null;
-        
-        if (principal instanceof UserDetails) {
-            rut = ((UserDetails) principal).getUsername();
-        } else if (principal instanceof String) {
-            rut = (String) principal;
+
+        Object principal = getPrincipal();
+        Usuario usuario;
+        if (principal instanceof UsuarioPrincipal && ((UsuarioPrincipal) principal).getId() != null) {
+            usuario = usuarioService.ObtenerUsuarioPorId(((UsuarioPrincipal) principal).getId());
         } else {
-            throw new RuntimeException("No se pudo obtener el RUT del usuario autenticado");
+            String rut = getRutUsuarioAutenticado();
+            usuario = usuarioService.ObtenerUsuarioPorRut(rut);
+            if (usuario == null) {
+                throw new RuntimeException("Usuario no encontrado con RUT: " + rut);
+            }
         }
-        
-        Usuario usuario = usuarioService.ObtenerUsuarioPorRut(rut);
-        if (usuario == null) {
-            throw new RuntimeException("Usuario no encontrado con RUT: " + rut);
+
+        if (request != null) {
+            request.setAttribute(ATRIBUTO_USUARIO, usuario, RequestAttributes.SCOPE_REQUEST);
         }
-        
         return usuario;
     }
+
+    public Long getIdUsuarioAutenticado() {
+        Object principal = getPrincipal();
+        if (principal instanceof UsuarioPrincipal && ((UsuarioPrincipal) principal).getId() != null) {
+            return ((UsuarioPrincipal) principal).getId();
+        }
+        return getUsuarioAutenticado().getId();
+    }
+
+    public String getRolUsuarioAutenticado() {
+        Object principal = getPrincipal();
+        if (principal instanceof UsuarioPrincipal) {
+            return ((UsuarioPrincipal) principal).getRol();
+        }
+        return getUsuarioAutenticado().getRol();
+    }
     
     public String getRutUsuarioAutenticado() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        
-        if (authentication == null || !authentication.isAuthenticated()) {
-            throw new RuntimeException("Usuario no autenticado");
-        }
-        
-        Object principal = authentication.getPrincipal();
+        Object principal = getPrincipal();
         
         if (principal instanceof UserDetails) {
             return ((UserDetails) principal).getUsername();
@@ -57,4 +77,14 @@ public class SecurityUtil {
             throw new RuntimeException("No se pudo obtener el RUT del usuario autenticado");
         }
     }
+
+    private Object getPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        
+        if (authentication == null || !authentication.isAuthenticated()) {
+            throw new RuntimeException("Usuario no autenticado");
+        }
+        
+        return authentication.getPrincipal();
+    }
 }
@@ -0,0 +1,32 @@
+package cl.veritrust.v1.Security;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Claims de un JWT ya verificado (firma y expiración). Se obtiene una sola vez por request
+ * mediante {@link JwtUtil#validarToken(String)}.
+ */
+public record TokenClaims(String id, String subject, Long usuarioId, String rol, Long version, Instant issuedAt, Instant expiration) {
+
+    static TokenClaims from(Claims claims) {
+        Number uid = claims.get(JwtUtil.CLAIM_USUARIO_ID, Number.class);
+        Number version = claims.get(JwtUtil.CLAIM_VERSION, Number.class);
+        return new TokenClaims(
+                claims.getId(),
+                claims.getSubject(),
+                uid != null ? uid.longValue() : null,
+                claims.get(JwtUtil.CLAIM_ROL, String.class),
+                version != null ? version.longValue() : null,
+                aInstant(claims.getIssuedAt()),
+                aInstant(claims.getExpiration())
+        );
+    }
+
+    // Date es mutable: el record sólo expone Instant
+    private static Instant aInstant(Date fecha) {
+        return fecha != null ? fecha.toInstant() : null;
+    }
+}
@@ -0,0 +1,81 @@
+package cl.veritrust.v1.Security;
+
+import cl.veritrust.v1.Model.Usuario;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Principal autenticado. Además del RUT lleva el id y el rol del usuario, de modo que
+ * puede construirse tanto desde la base de datos como sólo desde los claims del JWT.
+ */
+public class UsuarioPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String rut;
+    private final String contraseña;
+    private final String rol;
+    private final Collection<? extends GrantedAuthority> authorities;
+
+    public UsuarioPrincipal(Long id, String rut, String contraseña, String rol) {
+        this.id = id;
+        this.rut = rut;
+        this.contraseña = contraseña;
+        this.rol = rol;
+        this.authorities = Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + rol));
+    }
+
+    public static UsuarioPrincipal desde(Usuario u) {
+        return new UsuarioPrincipal(u.getId(), u.getRut(), u.getContraseña(), u.getRol());
+    }
+
+    public static UsuarioPrincipal desdeClaims(TokenClaims claims) {
+        return new UsuarioPrincipal(claims.usuarioId(), claims.subject(), null, claims.rol());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getRol() {
+        return rol;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return contraseña;
+    }
+
+    @Override
+    public String getUsername() {
+        return rut;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
@@ -0,0 +1,8 @@
+package cl.veritrust.v1.Service;
+
+/**
+ * Resultado de guardar un archivo: ruta relativa a app.upload.dir, SHA-256 (hex, minúsculas)
+ * y tamaño en bytes, calculados en la misma pasada en que se escribió a disco.
+ */
+public record ArchivoAlmacenado(String ruta, String sha256, long tamano) {
+}
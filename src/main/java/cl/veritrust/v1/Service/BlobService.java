@@ -0,0 +1,78 @@
+package cl.veritrust.v1.Service;
+
+import cl.veritrust.v1.Exception.FileStorageException;
+import cl.veritrust.v1.Model.ArchivoBlob;
+import cl.veritrust.v1.Repository.ArchivoBlobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Almacenamiento direccionado por contenido: el archivo se escribe una vez en blobs/ab/cd/&lt;sha256&gt;
+ * y los documentos con el mismo contenido comparten el blob mediante un contador de referencias.
+ */
+@Service
+public class BlobService {
+
+    @Autowired
+    private ArchivoBlobRepository archivoBlobRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    // Serializa alta/baja de un mismo hash para que el archivo y el contador no se desincronicen
+    private final ReentrantLock[] locks = new ReentrantLock[64];
+
+    public BlobService() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public ArchivoBlob almacenar(MultipartFile file) {
+        try {
+            return almacenar(file.getInputStream());
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo guardar el archivo " + file.getOriginalFilename(), ex);
+        }
+    }
+
+    public ArchivoBlob almacenar(InputStream contenido) {
+        ArchivoAlmacenado temporal = fileStorageService.storeTemporal(contenido);
+        String hash = temporal.sha256();
+        ReentrantLock lock = lockPara(hash);
+        lock.lock();
+        try {
+            String ruta = fileStorageService.moverABlob(temporal.ruta(), hash);
+            archivoBlobRepository.registrarReferencia(hash, ruta, temporal.tamano(), LocalDateTime.now());
+            return archivoBlobRepository.findById(hash)
+                    .orElseThrow(() -> new IllegalStateException("Blob no registrado: " + hash));
+        } finally {
+            lock.unlock();
+            fileStorageService.deleteFileByRelativePath(temporal.ruta());
+        }
+    }
+
+    public void liberar(String hash) {
+        if (hash == null) return;
+        ReentrantLock lock = lockPara(hash);
+        lock.lock();
+        try {
+            archivoBlobRepository.liberarReferencia(hash);
+            if (archivoBlobRepository.eliminarSinReferencias(hash) > 0) {
+                fileStorageService.deleteFileByRelativePath(FileStorageService.rutaBlob(hash));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockPara(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), locks.length)];
+    }
+}
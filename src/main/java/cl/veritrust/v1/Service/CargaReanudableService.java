@@ -0,0 +1,174 @@
+package cl.veritrust.v1.Service;
+
+import cl.veritrust.v1.Exception.CargaInvalidaException;
+import cl.veritrust.v1.Exception.HashNoCoincideException;
+import cl.veritrust.v1.Exception.OffsetInvalidoException;
+import cl.veritrust.v1.Exception.ResourceNotFoundException;
+import cl.veritrust.v1.Model.Documento;
+import cl.veritrust.v1.Model.SesionCarga;
+import cl.veritrust.v1.Model.Usuario;
+import cl.veritrust.v1.Repository.SesionCargaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Cargas reanudables de documentos grandes. El cliente abre una sesión declarando el tamaño,
+ * envía fragmentos con su offset (cada uno se escribe en su posición del archivo final, sin
+ * temporales ni reensamblado) y al completar la finaliza para crear el {@link Documento}.
+ */
+@Service
+public class CargaReanudableService {
+
+    private static final Set<String> TIPOS_PERMITIDOS = Set.of(
+            "application/pdf",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+
+    @Autowired
+    private SesionCargaRepository sesionCargaRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private DocumentoService documentoService;
+
+    @Autowired
+    private CuotaAlmacenamientoService cuotaAlmacenamientoService;
+
+    @Value("${app.upload.reanudable.max-bytes:2147483648}")
+    private long maxBytes;
+
+    @Value("${app.upload.reanudable.expiracion-horas:24}")
+    private long expiracionHoras;
+
+    public SesionCarga crear(Long usuarioId, String nombreOriginal, String tipoContenido, long tamanoTotal, String hash) {
+        if (!TIPOS_PERMITIDOS.contains(tipoContenido)) {
+            throw new CargaInvalidaException("Tipo de archivo no permitido: " + tipoContenido);
+        }
+        if (tamanoTotal <= 0 || tamanoTotal > maxBytes) {
+            throw new CargaInvalidaException("El tamaño debe estar entre 1 y " + maxBytes + " bytes");
+        }
+        // El tamaño declarado se reserva completo al abrir la sesión, antes de recibir fragmentos
+        cuotaAlmacenamientoService.reservar(usuarioId, tamanoTotal);
+        String nombreAlmacenado;
+        try {
+            nombreAlmacenado = fileStorageService.nombreUnico(nombreOriginal);
+            fileStorageService.crearArchivoVacio(nombreAlmacenado);
+        } catch (RuntimeException ex) {
+            cuotaAlmacenamientoService.liberar(usuarioId, tamanoTotal);
+            throw ex;
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        SesionCarga sesion = new SesionCarga();
+        sesion.setId(UUID.randomUUID().toString());
+        sesion.setUsuarioId(usuarioId);
+        sesion.setNombreOriginal(nombreOriginal);
+        sesion.setTipoContenido(tipoContenido);
+        sesion.setNombreAlmacenado(nombreAlmacenado);
+        sesion.setTamanoTotal(tamanoTotal);
+        sesion.setBytesRecibidos(0L);
+        sesion.setHashEsperado(hash != null ? hash.toLowerCase() : null);
+        sesion.setEstado(SesionCarga.Estado.EN_CURSO);
+        sesion.setFechaCreacion(ahora);
+        sesion.setFechaActualizacion(ahora);
+        return sesionCargaRepository.save(sesion);
+    }
+
+    public SesionCarga obtener(String id) {
+        return sesionCargaRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Carga no encontrada con id: " + id));
+    }
+
+    /**
+     * Escribe un fragmento a partir de {@code offset}. Se acepta cualquier offset dentro del prefijo
+     * ya recibido (reenvíos tras un corte); un offset más allá dejaría un hueco y se rechaza.
+     */
+    public SesionCarga escribirFragmento(SesionCarga sesion, long offset, InputStream contenido) {
+        if (sesion.getEstado() != SesionCarga.Estado.EN_CURSO) {
+            throw new CargaInvalidaException("La carga ya fue finalizada");
+        }
+        if (offset < 0 || offset > sesion.getBytesRecibidos()) {
+            throw new OffsetInvalidoException(sesion.getBytesRecibidos());
+        }
+        long escritos = fileStorageService.escribirEnPosicion(
+                sesion.getNombreAlmacenado(), offset, contenido, sesion.getTamanoTotal() - offset);
+        if (escritos > 0) {
+            sesionCargaRepository.avanzarOffset(sesion.getId(), offset + escritos, LocalDateTime.now());
+        }
+        return obtener(sesion.getId());
+    }
+
+    /**
+     * Verifica que la carga esté completa, calcula su SHA-256 y crea el documento. Es idempotente:
+     * finalizar de nuevo retorna el documento ya creado.
+     */
+    @Transactional(noRollbackFor = HashNoCoincideException.class)
+    public Documento finalizar(String id) {
+        SesionCarga sesion = sesionCargaRepository.findParaFinalizar(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Carga no encontrada con id: " + id));
+        if (sesion.getEstado() == SesionCarga.Estado.FINALIZADA) {
+            return documentoService.ObtenerDocumentoPorId(sesion.getDocumentoId());
+        }
+        if (!sesion.getBytesRecibidos().equals(sesion.getTamanoTotal())) {
+            throw new CargaInvalidaException("Carga incompleta: " + sesion.getBytesRecibidos()
+                    + " de " + sesion.getTamanoTotal() + " bytes recibidos");
+        }
+
+        ArchivoAlmacenado almacenado = fileStorageService.calcularHash(sesion.getNombreAlmacenado());
+        if (sesion.getHashEsperado() != null && !sesion.getHashEsperado().equals(almacenado.sha256())) {
+            fileStorageService.deleteFile(sesion.getNombreAlmacenado());
+            sesionCargaRepository.delete(sesion);
+            cuotaAlmacenamientoService.liberar(sesion.getUsuarioId(), sesion.getTamanoTotal());
+            throw new HashNoCoincideException("El hash SHA-256 informado no coincide con el contenido cargado");
+        }
+
+        Usuario usuario = new Usuario();
+        usuario.setId(sesion.getUsuarioId());
+
+        Documento doc = new Documento();
+        doc.setNombreOriginal(sesion.getNombreOriginal());
+        doc.setNombreAlmacenado(sesion.getNombreAlmacenado());
+        doc.setTipoContenido(sesion.getTipoContenido());
+        doc.setTamano(almacenado.tamano());
+        doc.setHashDocumento(almacenado.sha256());
+        doc.setFechaSubida(LocalDateTime.now());
+        doc.setFirmado(false);
+        doc.setUsuario(usuario);
+        Documento guardado = documentoService.CrearDocumento(doc);
+
+        sesion.setEstado(SesionCarga.Estado.FINALIZADA);
+        sesion.setDocumentoId(guardado.getId());
+        sesion.setFechaActualizacion(LocalDateTime.now());
+        sesionCargaRepository.save(sesion);
+        return guardado;
+    }
+
+    public void cancelar(SesionCarga sesion) {
+        sesionCargaRepository.delete(sesion);
+        if (sesion.getEstado() == SesionCarga.Estado.EN_CURSO) {
+            fileStorageService.deleteFile(sesion.getNombreAlmacenado());
+            cuotaAlmacenamientoService.liberar(sesion.getUsuarioId(), sesion.getTamanoTotal());
+        }
+    }
+
+    /**
+     * Elimina sesiones sin actividad: las abandonadas junto con su archivo parcial y las
+     * finalizadas sólo el registro (el archivo ya pertenece al documento).
+     */
+    @Scheduled(fixedDelayString = "${app.upload.reanudable.purga-ms:3600000}")
+    public void purgarSesiones() {
+        LocalDateTime limite = LocalDateTime.now().minusHours(expiracionHoras);
+        for (SesionCarga sesion : sesionCargaRepository.findByFechaActualizacionBefore(limite)) {
+            cancelar(sesion);
+        }
+    }
+}
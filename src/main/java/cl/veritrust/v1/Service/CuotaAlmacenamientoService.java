@@ -0,0 +1,100 @@
+package cl.veritrust.v1.Service;
+
+import cl.veritrust.v1.Exception.CuotaExcedidaException;
+import cl.veritrust.v1.Model.SesionCarga;
+import cl.veritrust.v1.Repository.DocumentoRepository;
+import cl.veritrust.v1.Repository.SesionCargaRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uso de almacenamiento por usuario (suma de Documento.tamano más las cargas reanudables en curso).
+ * Se mantiene en memoria con un contador atómico por usuario: reservar es un compare-and-set sobre
+ * el contador de ese usuario, así que subidas concurrentes de distintos usuarios no comparten
+ * ningún lock y las del mismo usuario sólo reintentan el CAS. Se reconstruye desde la BD al iniciar.
+ *
+ * Los bytes se reservan antes de escribir en disco (con la cota superior conocida, p. ej. el
+ * Content-Length) y se ajustan al tamaño real al terminar.
+ */
+@Service
+public class CuotaAlmacenamientoService {
+
+    public record Uso(Long usuarioId, long usadoBytes, long limiteBytes) {
+        public long getDisponibleBytes() {
+            return limiteBytes <= 0 ? Long.MAX_VALUE : Math.max(0, limiteBytes - usadoBytes);
+        }
+    }
+
+    @Autowired
+    private DocumentoRepository documentoRepository;
+
+    @Autowired
+    private SesionCargaRepository sesionCargaRepository;
+
+    // 0 = sin límite
+    @Value("${app.cuota.bytes-por-usuario:1073741824}")
+    private long limiteBytes;
+
+    private final Map<Long, AtomicLong> uso = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void reconstruir() {
+        documentoRepository.sumarTamanoPorUsuario()
+                .forEach(u -> contador(u.getUsuarioId()).addAndGet(u.getBytes()));
+        sesionCargaRepository.sumarTamanoPorUsuario(SesionCarga.Estado.EN_CURSO)
+                .forEach(u -> contador(u.getUsuarioId()).addAndGet(u.getBytes()));
+    }
+
+    /**
+     * Reserva {@code bytes} para el usuario o lanza {@link CuotaExcedidaException} sin modificar
+     * el contador.
+     */
+    public void reservar(Long usuarioId, long bytes) {
+        if (usuarioId == null || bytes <= 0) return;
+        AtomicLong contador = contador(usuarioId);
+        while (true) {
+            long actual = contador.get();
+            long nuevo = actual + bytes;
+            if (limiteBytes > 0 && nuevo > limiteBytes) {
+                throw new CuotaExcedidaException("Cuota de almacenamiento excedida: " + actual + " de "
+                        + limiteBytes + " bytes usados, se requieren " + bytes + " más");
+            }
+            if (contador.compareAndSet(actual, nuevo)) {
+                return;
+            }
+        }
+    }
+
+    public void liberar(Long usuarioId, long bytes) {
+        if (usuarioId == null || bytes <= 0) return;
+        contador(usuarioId).addAndGet(-bytes);
+    }
+
+    /**
+     * Pasa de lo reservado al tamaño real. Si el real es mayor (p. ej. un DOCX convertido a PDF)
+     * la diferencia se suma sin verificar el límite: el archivo ya existe.
+     */
+    public void ajustar(Long usuarioId, long reservado, long real) {
+        if (usuarioId == null || reservado == real) return;
+        contador(usuarioId).addAndGet(real - reservado);
+    }
+
+    public void olvidar(Long usuarioId) {
+        uso.remove(usuarioId);
+    }
+
+    public Uso obtenerUso(Long usuarioId) {
+        AtomicLong contador = uso.get(usuarioId);
+        return new Uso(usuarioId, contador != null ? contador.get() : 0, limiteBytes);
+    }
+
+    private AtomicLong contador(Long usuarioId) {
+        return uso.computeIfAbsent(usuarioId, id -> new AtomicLong());
+    }
+}
@@ -6,7 +6,11 @@ import cl.veritrust.v1.Exception.ResourceNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @Transactional
@@ -36,6 +40,44 @@ public class DocumentoService {
         return documentoRepository.save(documento);
     }
 
+    /**
+     * Resultado de {@link #GuardarDocumentos}: ids cuyo blob soltó la transacción (sólo para
+     * ellos hay que liberar la referencia) e ids que ya no existían y no se guardaron.
+     */
+    public record DocumentosGuardados(Set<Long> blobsSoltados, Set<Long> inexistentes) {}
+
+    /**
+     * Guarda en una sola transacción documentos ya existentes. Se precargan con una consulta
+     * para que merge no haga un SELECT por entidad; los UPDATE salen en lotes JDBC
+     * (hibernate.jdbc.batch_size). Los que se eliminaron mientras se firmaban se omiten, en
+     * vez de hacer fallar al resto.
+     *
+     * @param blobsReemplazados id de documento -> hash del blob que dejó de referenciar al firmarse
+     */
+    public DocumentosGuardados GuardarDocumentos(List<Documento> documentos, Map<Long, String> blobsReemplazados) {
+        Set<Long> existentes = new HashSet<>();
+        for (Documento d : documentoRepository.findAllById(documentos.stream().map(Documento::getId).toList())) {
+            existentes.add(d.getId());
+        }
+        List<Documento> aGuardar = new ArrayList<>(documentos.size());
+        Set<Long> inexistentes = new HashSet<>();
+        for (Documento d : documentos) {
+            if (existentes.contains(d.getId())) {
+                aGuardar.add(d);
+            } else {
+                inexistentes.add(d.getId());
+            }
+        }
+        Set<Long> soltados = new HashSet<>();
+        blobsReemplazados.forEach((id, hash) -> {
+            if (existentes.contains(id) && documentoRepository.soltarBlob(id, hash) == 1) {
+                soltados.add(id);
+            }
+        });
+        documentoRepository.saveAll(aGuardar);
+        return new DocumentosGuardados(soltados, inexistentes);
+    }
+
     public Documento ActualizarDocumento(Long id, Documento detallesDocumento) {
         Documento documento = ObtenerDocumentoPorId(id);
         if (detallesDocumento.getNombreOriginal() != null) documento.setNombreOriginal(detallesDocumento.getNombreOriginal());
@@ -93,8 +135,15 @@ public class DocumentoService {
         return documentoRepository.findByUsuario_IdAndFirmadoTrueOrderByFechaFirmaDesc(usuarioId);
     }
 
-    public void EliminarDocumento(Long id) {
+    /**
+     * Elimina el documento y devuelve el hash del blob cuya referencia soltó esta llamada (null si
+     * no tenía blob o si otra solicitud ya lo había soltado); quien llama libera esa referencia.
+     */
+    public String EliminarDocumento(Long id) {
         Documento documento = ObtenerDocumentoPorId(id);
+        String hashBlob = documento.getBlob() != null ? documento.getBlob().getHash() : null;
+        boolean soltado = hashBlob != null && documentoRepository.soltarBlob(id, hashBlob) == 1;
         documentoRepository.delete(documento);
+        return soltado ? hashBlob : null;
     }
 }
\ No newline at end of file
@@ -1,6 +1,14 @@
 package cl.veritrust.v1.Service;
 
+import cl.veritrust.v1.Exception.CargaInvalidaException;
 import cl.veritrust.v1.Exception.FileStorageException;
+import cl.veritrust.v1.Exception.HashNoCoincideException;
+import cl.veritrust.v1.Model.Documento;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.UrlResource;
 import org.springframework.core.io.Resource;
@@ -9,103 +17,457 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
  
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
  
 @Service
 public class FileStorageService {
  
     private final Path uploadDir;
+
+    private final MeterRegistry meterRegistry;
+    private final FileStore fileStore;
+    private final Counter resolucionFragmentada;
+    private final Counter resolucionPlana;
+    private final Counter resolucionAusente;
+    private final Counter eliminados;
+    private final Counter eliminacionInexistente;
+    private final Counter eliminacionFallida;
  
-    public FileStorageService(@Value("${app.upload.dir}") String uploadDir) {
+    public FileStorageService(@Value("${app.upload.dir}") String uploadDir, MeterRegistry meterRegistry) {
         this.uploadDir = Paths.get(uploadDir).toAbsolutePath().normalize();
         try {
             Files.createDirectories(this.uploadDir);
+            this.fileStore = Files.getFileStore(this.uploadDir);
         } catch (Exception ex) {
             throw new FileStorageException("No se pudo crear la carpeta de uploads.", ex);
         }
+
+        this.meterRegistry = meterRegistry;
+        this.resolucionFragmentada = contadorResolucion("fragmentado");
+        this.resolucionPlana = contadorResolucion("plano");
+        this.resolucionAusente = contadorResolucion("ausente");
+        this.eliminados = contadorEliminacion("eliminado");
+        this.eliminacionInexistente = contadorEliminacion("inexistente");
+        this.eliminacionFallida = contadorEliminacion("error");
+        Gauge.builder("veritrust.almacenamiento.disco.disponible", this, f -> f.espacio(FileStore::getUsableSpace))
+                .description("Bytes disponibles en el volumen de app.upload.dir")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("veritrust.almacenamiento.disco.total", this, f -> f.espacio(FileStore::getTotalSpace))
+                .description("Tamaño del volumen de app.upload.dir")
+                .baseUnit("bytes")
+                .register(meterRegistry);
     }
  
-    public String storeFile(MultipartFile file) {
-        String originalName = StringUtils.cleanPath(file.getOriginalFilename());
+    public ArchivoAlmacenado storeFile(MultipartFile file) {
         try {
-            if (originalName.contains("..")) {
-                throw new FileStorageException("Nombre de archivo inválido: " + originalName);
-            }
-            String fileName = UUID.randomUUID().toString() + "_" + originalName;
-            Path targetLocation = this.uploadDir.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            return fileName;
+            return storeStream(file.getOriginalFilename(), file.getInputStream());
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo guardar el archivo " + file.getOriginalFilename(), ex);
+        }
+    }
+
+    /**
+     * Escribe el contenido directamente en su ubicación final; lo usa la subida en streaming,
+     * donde el contenido llega desde el cuerpo de la request sin archivo temporal de por medio.
+     */
+    public ArchivoAlmacenado storeStream(String originalName, InputStream contenido) {
+        String fileName = nombreUnico(originalName);
+        try {
+            return copiarConHash(contenido, rutaNuevoArchivo(fileName), fileName, "documento");
         } catch (IOException ex) {
             throw new FileStorageException("No se pudo guardar el archivo " + originalName, ex);
         }
     }
     
-    public String storeFileForUser(MultipartFile file, Long usuarioId, String hash) {
-        String originalName = StringUtils.cleanPath(file.getOriginalFilename());
+    public String nombreUnico(String originalName) {
+        String nombre = StringUtils.cleanPath(originalName);
+        if (nombre.contains("..")) {
+            throw new FileStorageException("Nombre de archivo inválido: " + nombre);
+        }
+        return UUID.randomUUID().toString() + "_" + nombre;
+    }
+
+    /**
+     * Escribe el archivo en tmp/ calculando su hash; lo usa {@link BlobService} antes de
+     * decidir si el contenido ya existe.
+     */
+    public ArchivoAlmacenado storeTemporal(InputStream contenido) {
         try {
-            if (originalName.contains("..")) {
-                throw new FileStorageException("Nombre de archivo inválido: " + originalName);
+            Path tmpDir = this.uploadDir.resolve("tmp");
+            Files.createDirectories(tmpDir);
+            String fileName = UUID.randomUUID().toString();
+            return copiarConHash(contenido, tmpDir.resolve(fileName), "tmp/" + fileName, "temporal");
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo guardar el archivo temporal", ex);
+        }
+    }
+
+    /**
+     * Mueve un archivo temporal a su ubicación de blob. Si el blob ya existe el temporal
+     * no se mueve (quien llama lo elimina). Retorna la ruta relativa del blob.
+     */
+    public String moverABlob(String rutaTemporal, String hash) {
+        String ruta = rutaBlob(hash);
+        Path destino = this.uploadDir.resolve(ruta);
+        try {
+            if (!Files.exists(destino)) {
+                Files.createDirectories(destino.getParent());
+                Files.move(this.uploadDir.resolve(rutaTemporal), destino, StandardCopyOption.ATOMIC_MOVE);
             }
-            
-            // Crear subcarpeta para el usuario
-            Path userDir = this.uploadDir.resolve("documentos").resolve(usuarioId.toString());
+            return ruta;
+        } catch (FileAlreadyExistsException ex) {
+            return ruta;
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo almacenar el blob " + hash, ex);
+        }
+    }
+
+    public static String rutaBlob(String hash) {
+        return "blobs/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+
+    /**
+     * Archivo original de un documento: el blob compartido si el documento está deduplicado,
+     * o el archivo propio (nombreAlmacenado) en caso contrario.
+     */
+    public Resource loadDocumentoOriginal(Documento documento) {
+        if (documento.getBlob() != null) {
+            return loadFileByRelativePath(documento.getBlob().getRuta());
+        }
+        return loadFileAsResource(documento.getNombreAlmacenado());
+    }
+
+    /**
+     * Guarda el archivo firmado de un usuario calculando su SHA-256 mientras se escribe.
+     * Si no coincide con el hash informado por el cliente el archivo se elimina y se lanza
+     * {@link HashNoCoincideException}.
+     */
+    public ArchivoAlmacenado storeFileForUser(MultipartFile file, Long usuarioId, String hash) {
+        try {
+            ArchivoAlmacenado almacenado = storeStreamForUser(file.getInputStream(), usuarioId);
+            verificarHash(almacenado, hash);
+            return almacenado;
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo guardar el archivo " + file.getOriginalFilename(), ex);
+        }
+    }
+
+    /**
+     * Escribe el archivo firmado en documentos/&lt;usuario&gt;/ sin conocer aún el hash informado
+     * (en multipart puede llegar después del archivo): se escribe con un nombre parcial y se
+     * renombra con el hash calculado. La verificación queda a cargo de {@link #verificarHash}.
+     */
+    public ArchivoAlmacenado storeStreamForUser(InputStream contenido, Long usuarioId) {
+        Path userDir = this.uploadDir.resolve("documentos").resolve(usuarioId.toString());
+        Path parcial = userDir.resolve(".parcial-" + UUID.randomUUID());
+        try {
             Files.createDirectories(userDir);
-            
+            ArchivoAlmacenado escrito = copiarConHash(contenido, parcial, null, "firmado");
+
             long timestamp = System.currentTimeMillis();
-            String hashCorto = (hash != null && hash.length() >= 8) ? hash.substring(0, 8).toUpperCase() : "UNKNOWN";
+            String hashCorto = escrito.sha256().substring(0, 8).toUpperCase();
             String fileName = "DOCUMENTO_FIRMADO_" + timestamp + "_" + usuarioId + "_" + hashCorto + ".pdf";
-            
-            Path targetLocation = userDir.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            
-            return "documentos/" + usuarioId + "/" + fileName;
+            Files.move(parcial, userDir.resolve(fileName), StandardCopyOption.ATOMIC_MOVE);
+            return new ArchivoAlmacenado("documentos/" + usuarioId + "/" + fileName, escrito.sha256(), escrito.tamano());
         } catch (IOException ex) {
-            throw new FileStorageException("No se pudo guardar el archivo " + originalName, ex);
+            throw new FileStorageException("No se pudo guardar el archivo firmado", ex);
+        }
+    }
+
+    /**
+     * Compara el hash calculado con el informado por el cliente; si no coinciden elimina el archivo.
+     */
+    public void verificarHash(ArchivoAlmacenado almacenado, String hash) {
+        if (hash != null && !almacenado.sha256().equalsIgnoreCase(hash)) {
+            deleteFileByRelativePath(almacenado.ruta());
+            throw new HashNoCoincideException("El hash SHA-256 informado no coincide con el contenido del archivo");
         }
     }
     
+    /**
+     * Crea el archivo vacío donde se irán escribiendo los fragmentos de una carga reanudable.
+     */
+    public void crearArchivoVacio(String relativePath) {
+        try {
+            Files.createFile(rutaNuevoArchivo(relativePath));
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo crear el archivo " + relativePath, ex);
+        }
+    }
+
+    /**
+     * Escribe el stream en el archivo a partir de {@code posicion} con escrituras posicionales,
+     * sin copia intermedia. Acepta a lo más {@code maximo} bytes. Si el cliente corta la conexión
+     * se retorna lo escrito hasta ese momento, que es válido para reanudar.
+     */
+    public long escribirEnPosicion(String relativePath, long posicion, InputStream in, long maximo) {
+        Path destino = resolver(relativePath);
+        byte[] buffer = new byte[64 * 1024];
+        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        long escritos = 0;
+        long inicio = System.nanoTime();
+        boolean ok = false;
+        try (FileChannel canal = FileChannel.open(destino, StandardOpenOption.WRITE)) {
+            while (true) {
+                int leidos;
+                try {
+                    // se pide un byte más del permitido para detectar fragmentos sobredimensionados
+                    leidos = in.read(buffer, 0, (int) Math.min(buffer.length, maximo - escritos + 1));
+                } catch (IOException ex) {
+                    break;
+                }
+                if (leidos < 0) break;
+                if (escritos + leidos > maximo) {
+                    throw new CargaInvalidaException("El fragmento excede el tamaño declarado de la carga");
+                }
+                bb.clear().limit(leidos);
+                while (bb.hasRemaining()) {
+                    escritos += canal.write(bb, posicion + escritos);
+                }
+            }
+            ok = true;
+            return escritos;
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo escribir el archivo " + relativePath, ex);
+        } finally {
+            registrarEscritura("fragmento", inicio, escritos, ok);
+        }
+    }
+
+    /**
+     * SHA-256 y tamaño de un archivo ya escrito.
+     */
+    public ArchivoAlmacenado calcularHash(String relativePath) {
+        MessageDigest digest = nuevoDigestSha256();
+        Path origen = resolver(relativePath);
+        byte[] buffer = new byte[64 * 1024];
+        long tamano = 0;
+        long inicio = System.nanoTime();
+        try (InputStream in = Files.newInputStream(origen)) {
+            int leidos;
+            while ((leidos = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, leidos);
+                tamano += leidos;
+            }
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo leer el archivo " + relativePath, ex);
+        }
+        Timer.builder("veritrust.almacenamiento.lectura")
+                .description("Latencia de lecturas completas de archivos")
+                .tag("operacion", "hash")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("veritrust.almacenamiento.lectura.bytes")
+                .baseUnit("bytes")
+                .tag("operacion", "hash")
+                .register(meterRegistry)
+                .record(tamano);
+        return new ArchivoAlmacenado(relativePath, HexFormat.of().formatHex(digest.digest()), tamano);
+    }
+    
     public Resource loadFileByRelativePath(String relativePath) {
+        long inicio = System.nanoTime();
+        boolean encontrado = false;
         try {
-            Path filePath = this.uploadDir.resolve(relativePath).normalize();
+            Path filePath = resolver(relativePath);
             Resource resource = new UrlResource(filePath.toUri());
-            if (resource.exists()) return resource;
+            encontrado = resource.exists();
+            if (encontrado) return resource;
             else throw new FileStorageException("Archivo no encontrado " + relativePath);
         } catch (MalformedURLException ex) {
             throw new FileStorageException("Archivo no encontrado " + relativePath, ex);
+        } finally {
+            registrarCarga(inicio, encontrado);
         }
     }
  
     public Resource loadFileAsResource(String fileName) {
+        long inicio = System.nanoTime();
+        boolean encontrado = false;
         try {
-            Path filePath = this.uploadDir.resolve(fileName).normalize();
+            Path filePath = resolver(fileName);
             Resource resource = new UrlResource(filePath.toUri());
-            if (resource.exists()) return resource;
+            encontrado = resource.exists();
+            if (encontrado) return resource;
             else throw new FileStorageException("Archivo no encontrado " + fileName);
         } catch (MalformedURLException ex) {
             throw new FileStorageException("Archivo no encontrado " + fileName, ex);
+        } finally {
+            registrarCarga(inicio, encontrado);
         }
     }
  
     public boolean deleteFile(String fileName) {
         try {
-            Path filePath = this.uploadDir.resolve(fileName).normalize();
-            return Files.deleteIfExists(filePath);
+            Path filePath = resolver(fileName);
+            boolean eliminado = Files.deleteIfExists(filePath);
+            (eliminado ? eliminados : eliminacionInexistente).increment();
+            return eliminado;
         } catch (IOException ex) {
+            // quien llama sólo recibe false; el contador deja visible el fallo
+            eliminacionFallida.increment();
             return false;
         }
     }
     
     public boolean deleteFileByRelativePath(String relativePath) {
         try {
-            Path filePath = this.uploadDir.resolve(relativePath).normalize();
-            return Files.deleteIfExists(filePath);
+            Path filePath = resolver(relativePath);
+            boolean eliminado = Files.deleteIfExists(filePath);
+            (eliminado ? eliminados : eliminacionInexistente).increment();
+            return eliminado;
         } catch (IOException ex) {
+            // quien llama sólo recibe false; el contador deja visible el fallo
+            eliminacionFallida.increment();
             return false;
         }
     }
 
+    /**
+     * Ubicación fragmentada de un archivo suelto: ab/cd/&lt;nombre&gt;, con ab y cd tomados del
+     * SHA-256 del nombre, para que ningún directorio acumule más de una fracción de los archivos.
+     */
+    public static String rutaFragmentada(String nombre) {
+        byte[] h = nuevoDigestSha256().digest(nombre.getBytes(StandardCharsets.UTF_8));
+        HexFormat hex = HexFormat.of();
+        return hex.toHexDigits(h[0]) + "/" + hex.toHexDigits(h[1]) + "/" + nombre;
+    }
+
+    /**
+     * Ruta donde se escribe un archivo nuevo (siempre en el layout fragmentado); crea los
+     * directorios intermedios.
+     */
+    public Path rutaNuevoArchivo(String nombre) throws IOException {
+        Path destino = resolverDentro(rutaFragmentada(nombre));
+        Files.createDirectories(destino.getParent());
+        return destino;
+    }
+
+    /**
+     * Resuelve un nombre almacenado. Las rutas con directorio (blobs/, documentos/, tmp/) se usan
+     * tal cual; los nombres sueltos se buscan en el layout fragmentado y, si no están, en el
+     * layout plano anterior (archivos aún no migrados).
+     */
+    Path resolver(String nombre) {
+        if (nombre.indexOf('/') >= 0) {
+            return resolverDentro(nombre);
+        }
+        Path fragmentada = resolverDentro(rutaFragmentada(nombre));
+        if (Files.exists(fragmentada)) {
+            resolucionFragmentada.increment();
+            return fragmentada;
+        }
+        Path plana = resolverDentro(nombre);
+        if (Files.exists(plana)) {
+            resolucionPlana.increment();
+            return plana;
+        }
+        resolucionAusente.increment();
+        // pudo migrarse entre las dos comprobaciones; si no existe en ninguna, se usa la nueva
+        return fragmentada;
+    }
+
+    private Path resolverDentro(String relativePath) {
+        Path ruta = this.uploadDir.resolve(relativePath).normalize();
+        if (!ruta.startsWith(this.uploadDir)) {
+            throw new FileStorageException("Ruta inválida: " + relativePath);
+        }
+        return ruta;
+    }
+
+    /**
+     * Copia el stream al destino calculando SHA-256 y tamaño en la misma pasada (sin releer el archivo).
+     */
+    private ArchivoAlmacenado copiarConHash(InputStream in, Path destino, String rutaRelativa, String operacion) throws IOException {
+        MessageDigest digest = nuevoDigestSha256();
+        long tamano;
+        long inicio = System.nanoTime();
+        try (InputStream entrada = new DigestInputStream(in, digest)) {
+            tamano = Files.copy(entrada, destino, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            registrarEscritura(operacion, inicio, 0, false);
+            // el origen falló a mitad de camino (cliente cortó, límite de tamaño): no dejar el parcial
+            Files.deleteIfExists(destino);
+            throw ex;
+        }
+        registrarEscritura(operacion, inicio, tamano, true);
+        return new ArchivoAlmacenado(rutaRelativa, HexFormat.of().formatHex(digest.digest()), tamano);
+    }
+
+    private void registrarEscritura(String operacion, long inicio, long bytes, boolean ok) {
+        Timer.builder("veritrust.almacenamiento.escritura")
+                .description("Latencia de escritura de archivos")
+                .tag("operacion", operacion)
+                .tag("resultado", ok ? "ok" : "error")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        if (ok) {
+            DistributionSummary.builder("veritrust.almacenamiento.escritura.bytes")
+                    .description("Bytes escritos por operación")
+                    .baseUnit("bytes")
+                    .tag("operacion", operacion)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(bytes);
+        }
+    }
+
+    private void registrarCarga(long inicio, boolean encontrado) {
+        Timer.builder("veritrust.almacenamiento.carga")
+                .description("Resolución de archivos para lectura")
+                .tag("resultado", encontrado ? "encontrado" : "no_encontrado")
+                .register(meterRegistry)
+                .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+    }
+
+    private Counter contadorResolucion(String layout) {
+        return Counter.builder("veritrust.almacenamiento.resolucion")
+                .description("Nombres sueltos resueltos por layout (fragmentado, plano sin migrar o ausente)")
+                .tag("layout", layout)
+                .register(meterRegistry);
+    }
+
+    private Counter contadorEliminacion(String resultado) {
+        return Counter.builder("veritrust.almacenamiento.eliminacion")
+                .description("Eliminaciones de archivos por resultado")
+                .tag("resultado", resultado)
+                .register(meterRegistry);
+    }
+
+    private interface EspacioDisco {
+        long medir(FileStore store) throws IOException;
+    }
+
+    private double espacio(EspacioDisco medida) {
+        try {
+            return medida.medir(fileStore);
+        } catch (IOException ex) {
+            return Double.NaN;
+        }
+    }
+
+    public static MessageDigest nuevoDigestSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 no disponible", ex);
+        }
+    }
+
     public Path getUploadDir() {
         return this.uploadDir;
     }
@@ -0,0 +1,234 @@
+package cl.veritrust.v1.Service;
+
+import cl.veritrust.v1.Components.FirmarDoc;
+import cl.veritrust.v1.Exception.ResourceNotFoundException;
+import cl.veritrust.v1.Exception.ServicioSaturadoException;
+import cl.veritrust.v1.Model.Documento;
+import cl.veritrust.v1.Model.TrabajoFirma;
+import cl.veritrust.v1.Repository.TrabajoFirmaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Firma de documentos en segundo plano. La solicitud sólo registra un {@link TrabajoFirma}
+ * y lo encola; un pool acotado ejecuta la conversión y el estampado. Con el pool y la cola
+ * llenos la solicitud se rechaza con {@link ServicioSaturadoException}.
+ *
+ * <p>El estado vive en la base de datos: al arrancar, los trabajos que quedaron en proceso
+ * vuelven a pendientes y un barrido periódico encola los pendientes que no estén en la cola.
+ */
+@Service
+public class FirmaAsincronaService implements DisposableBean {
+
+    private static final List<TrabajoFirma.Estado> ACTIVOS =
+            List.of(TrabajoFirma.Estado.PENDIENTE, TrabajoFirma.Estado.EN_PROCESO);
+    private static final List<TrabajoFirma.Estado> TERMINADOS =
+            List.of(TrabajoFirma.Estado.COMPLETADO, TrabajoFirma.Estado.FALLIDO);
+
+    private final TrabajoFirmaRepository trabajoFirmaRepository;
+    private final DocumentoService documentoService;
+    private final FirmarDoc firmarDoc;
+    private final ThreadPoolExecutor executor;
+    private final long retencionHoras;
+    private final MeterRegistry meterRegistry;
+    private final Counter rechazos;
+    private final String ddlAuto;
+
+    // trabajos entregados al pool y aún no terminados, para que el barrido no los duplique
+    private final Set<String> encolados = ConcurrentHashMap.newKeySet();
+    private volatile boolean recuperado;
+
+    public FirmaAsincronaService(
+            TrabajoFirmaRepository trabajoFirmaRepository,
+            DocumentoService documentoService,
+            FirmarDoc firmarDoc,
+            @Value("${app.firma.hilos:2}") int hilos,
+            @Value("${app.firma.cola:100}") int capacidadCola,
+            @Value("${app.firma.retencion-horas:168}") long retencionHoras,
+            @Value("${spring.jpa.hibernate.ddl-auto:}") String ddlAuto,
+            MeterRegistry meterRegistry
+    ) {
+        this.trabajoFirmaRepository = trabajoFirmaRepository;
+        this.documentoService = documentoService;
+        this.firmarDoc = firmarDoc;
+        this.retencionHoras = retencionHoras;
+        this.ddlAuto = ddlAuto;
+        this.meterRegistry = meterRegistry;
+
+        int tamano = Math.max(1, hilos);
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                tamano, tamano,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                r -> {
+                    Thread t = new Thread(r, "firma-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        this.rechazos = Counter.builder("veritrust.firma.rechazos")
+                .description("Solicitudes de firma rechazadas por pool de firma saturado")
+                .register(meterRegistry);
+        Gauge.builder("veritrust.firma.cola", executor, e -> e.getQueue().size())
+                .description("Trabajos de firma en espera")
+                .register(meterRegistry);
+        Gauge.builder("veritrust.firma.activas", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Trabajos de firma en ejecución")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registra y encola la firma del documento. Si ya hay un trabajo pendiente o en proceso
+     * para el mismo documento se devuelve ése en vez de crear otro.
+     */
+    public synchronized TrabajoFirma encolar(Documento documento, Long usuarioId) {
+        TrabajoFirma existente = trabajoFirmaRepository
+                .findFirstByDocumentoIdAndEstadoIn(documento.getId(), ACTIVOS)
+                .orElse(null);
+        if (existente != null) {
+            return existente;
+        }
+
+        TrabajoFirma trabajo = new TrabajoFirma();
+        trabajo.setId(UUID.randomUUID().toString());
+        trabajo.setDocumentoId(documento.getId());
+        trabajo.setUsuarioId(usuarioId);
+        trabajo.setEstado(TrabajoFirma.Estado.PENDIENTE);
+        trabajo.setFechaCreacion(LocalDateTime.now());
+        trabajo = trabajoFirmaRepository.save(trabajo);
+
+        if (!enviar(trabajo.getId())) {
+            // sin cupo no se deja el registro: el cliente recibe 503 y reintenta
+            trabajoFirmaRepository.deleteById(trabajo.getId());
+            throw new ServicioSaturadoException("Servicio de firma saturado, intente nuevamente");
+        }
+        return trabajo;
+    }
+
+    public TrabajoFirma obtener(String id) {
+        return trabajoFirmaRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Trabajo de firma no encontrado con id: " + id));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recuperar() {
+        if (ddlAuto.startsWith("create")) {
+            // trabajo_firma se recrea vacía en cada arranque: los trabajos encolados antes se pierden
+            System.err.println("spring.jpa.hibernate.ddl-auto=" + ddlAuto
+                    + ": los trabajos de firma no sobreviven reinicios");
+        }
+        int reiniciados = trabajoFirmaRepository.reiniciarEnProceso(
+                TrabajoFirma.Estado.EN_PROCESO, TrabajoFirma.Estado.PENDIENTE);
+        if (reiniciados > 0) {
+            System.out.println(reiniciados + " trabajos de firma interrumpidos vuelven a pendientes");
+        }
+        recuperado = true;
+        reencolarPendientes();
+    }
+
+    /**
+     * Encola los pendientes que no están en el pool (recuperados al arrancar o que no cupieron
+     * en la cola) y elimina los trabajos terminados más antiguos que la retención.
+     */
+    @Scheduled(fixedDelayString = "${app.firma.barrido-ms:30000}")
+    public void reencolarPendientes() {
+        if (!recuperado) {
+            return;
+        }
+        for (TrabajoFirma trabajo : trabajoFirmaRepository.findByEstadoOrderByFechaCreacionAsc(TrabajoFirma.Estado.PENDIENTE)) {
+            if (encolados.contains(trabajo.getId())) {
+                continue;
+            }
+            if (!enviar(trabajo.getId())) {
+                break;
+            }
+        }
+        trabajoFirmaRepository.eliminarTerminadosAntesDe(TERMINADOS, LocalDateTime.now().minusHours(retencionHoras));
+    }
+
+    private boolean enviar(String id) {
+        if (!encolados.add(id)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> procesar(id));
+            return true;
+        } catch (RejectedExecutionException e) {
+            encolados.remove(id);
+            rechazos.increment();
+            return false;
+        }
+    }
+
+    private void procesar(String id) {
+        try {
+            if (trabajoFirmaRepository.tomar(id, LocalDateTime.now(),
+                    TrabajoFirma.Estado.PENDIENTE, TrabajoFirma.Estado.EN_PROCESO) == 0) {
+                return;
+            }
+            TrabajoFirma trabajo = trabajoFirmaRepository.findById(id).orElse(null);
+            if (trabajo == null) {
+                return;
+            }
+
+            Timer.Sample muestra = Timer.start(meterRegistry);
+            try {
+                Documento documento = documentoService.ObtenerDocumentoPorId(trabajo.getDocumentoId());
+                // reintento tras un reinicio: la firma pudo quedar guardada antes de la caída
+                if (!documento.isFirmado()) {
+                    firmarDoc.signDocumento(documento);
+                }
+                trabajo.setEstado(TrabajoFirma.Estado.COMPLETADO);
+                trabajo.setError(null);
+            } catch (Exception e) {
+                System.err.println("Falló el trabajo de firma " + id + " del documento "
+                        + trabajo.getDocumentoId() + ": " + e.getMessage());
+                trabajo.setEstado(TrabajoFirma.Estado.FALLIDO);
+                trabajo.setError(truncar(e.getMessage()));
+            }
+            trabajo.setFechaFin(LocalDateTime.now());
+            trabajoFirmaRepository.save(trabajo);
+
+            muestra.stop(Timer.builder("veritrust.firma.duracion")
+                    .description("Duración de los trabajos de firma en segundo plano")
+                    .tag("resultado", trabajo.getEstado() == TrabajoFirma.Estado.COMPLETADO ? "ok" : "error")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        } catch (RuntimeException e) {
+            // el trabajo queda en proceso y se retoma en el próximo arranque
+            System.err.println("No se pudo registrar el resultado del trabajo de firma " + id + ": " + e.getMessage());
+        } finally {
+            encolados.remove(id);
+        }
+    }
+
+    private static String truncar(String mensaje) {
+        if (mensaje == null) {
+            return "Error desconocido al firmar";
+        }
+        return mensaje.length() > 1000 ? mensaje.substring(0, 1000) : mensaje;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,185 @@
+package cl.veritrust.v1.Service;
+
+import cl.veritrust.v1.Components.FirmarDoc;
+import cl.veritrust.v1.Exception.CargaInvalidaException;
+import cl.veritrust.v1.Model.Documento;
+import cl.veritrust.v1.Repository.DocumentoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Firma de varios documentos en una sola solicitud. La conversión y el estampado se reparten
+ * en un pool de workers (por defecto uno por núcleo) y los documentos firmados se guardan en
+ * lotes, en una transacción por lote, en vez de una escritura por documento.
+ *
+ * <p>Con la cola llena la tarea la ejecuta el propio hilo de la solicitud, lo que frena el
+ * envío sin rechazar documentos del lote.
+ */
+@Service
+public class FirmaLoteService implements DisposableBean {
+
+    public enum Resultado { FIRMADO, YA_FIRMADO, NO_ENCONTRADO, ERROR }
+
+    public record ResultadoDocumento(Long documentoId, Resultado resultado, String error) {}
+
+    public record Reporte(int total, int firmados, int fallidos, long duracionMs, List<ResultadoDocumento> resultados) {}
+
+    private final DocumentoRepository documentoRepository;
+    private final DocumentoService documentoService;
+    private final FirmarDoc firmarDoc;
+    private final ThreadPoolExecutor executor;
+    private final int maxDocumentos;
+    private final int tamanoLote;
+    private final MeterRegistry meterRegistry;
+
+    public FirmaLoteService(
+            DocumentoRepository documentoRepository,
+            DocumentoService documentoService,
+            FirmarDoc firmarDoc,
+            @Value("${app.firma.lote.hilos:0}") int hilos,
+            @Value("${app.firma.lote.cola:100}") int capacidadCola,
+            @Value("${app.firma.lote.max-documentos:500}") int maxDocumentos,
+            @Value("${app.firma.lote.tamano-escritura:50}") int tamanoLote,
+            MeterRegistry meterRegistry
+    ) {
+        this.documentoRepository = documentoRepository;
+        this.documentoService = documentoService;
+        this.firmarDoc = firmarDoc;
+        this.maxDocumentos = maxDocumentos;
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.meterRegistry = meterRegistry;
+
+        int tamano = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                tamano, tamano,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, capacidadCola)),
+                r -> {
+                    Thread t = new Thread(r, "firma-lote-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+
+        Gauge.builder("veritrust.firma.lote.cola", executor, e -> e.getQueue().size())
+                .description("Documentos de lotes de firma en espera")
+                .register(meterRegistry);
+        Gauge.builder("veritrust.firma.lote.activas", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Documentos de lotes de firma en ejecución")
+                .register(meterRegistry);
+    }
+
+    public Reporte firmar(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new CargaInvalidaException("Debe indicar al menos un documento");
+        }
+        Set<Long> unicos = new LinkedHashSet<>(ids);
+        unicos.remove(null);
+        if (unicos.size() > maxDocumentos) {
+            throw new CargaInvalidaException("El lote supera el máximo de " + maxDocumentos + " documentos");
+        }
+
+        long inicio = System.nanoTime();
+        Map<Long, Documento> documentos = new HashMap<>();
+        for (Documento d : documentoRepository.findAllById(unicos)) {
+            documentos.put(d.getId(), d);
+        }
+
+        Map<Long, ResultadoDocumento> resultados = new LinkedHashMap<>();
+        Map<Long, Future<FirmarDoc.FirmaPreparada>> enCurso = new LinkedHashMap<>();
+        for (Long id : unicos) {
+            Documento doc = documentos.get(id);
+            if (doc == null) {
+                resultados.put(id, new ResultadoDocumento(id, Resultado.NO_ENCONTRADO, "Documento no encontrado"));
+            } else if (doc.isFirmado()) {
+                resultados.put(id, new ResultadoDocumento(id, Resultado.YA_FIRMADO, null));
+            } else {
+                resultados.put(id, null);
+                enCurso.put(id, executor.submit(() -> firmarDoc.prepararFirma(doc)));
+            }
+        }
+
+        List<FirmarDoc.FirmaPreparada> pendientes = new ArrayList<>(tamanoLote);
+        for (Map.Entry<Long, Future<FirmarDoc.FirmaPreparada>> entrada : enCurso.entrySet()) {
+            Long id = entrada.getKey();
+            try {
+                pendientes.add(entrada.getValue().get());
+                if (pendientes.size() >= tamanoLote) {
+                    guardar(pendientes, resultados);
+                }
+            } catch (ExecutionException e) {
+                Throwable causa = e.getCause() != null ? e.getCause() : e;
+                resultados.put(id, new ResultadoDocumento(id, Resultado.ERROR, causa.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                enCurso.values().forEach(f -> f.cancel(true));
+                resultados.put(id, new ResultadoDocumento(id, Resultado.ERROR, "Firma interrumpida"));
+            } catch (CancellationException e) {
+                resultados.put(id, new ResultadoDocumento(id, Resultado.ERROR, "Firma interrumpida"));
+            }
+        }
+        guardar(pendientes, resultados);
+
+        int firmados = 0;
+        int fallidos = 0;
+        for (ResultadoDocumento r : resultados.values()) {
+            Counter.builder("veritrust.firma.lote.documentos")
+                    .description("Documentos procesados por lotes de firma")
+                    .tag("resultado", r.resultado().name().toLowerCase())
+                    .register(meterRegistry)
+                    .increment();
+            if (r.resultado() == Resultado.FIRMADO) firmados++;
+            if (r.resultado() == Resultado.ERROR || r.resultado() == Resultado.NO_ENCONTRADO) fallidos++;
+        }
+        long duracionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        return new Reporte(resultados.size(), firmados, fallidos, duracionMs, new ArrayList<>(resultados.values()));
+    }
+
+    private void guardar(List<FirmarDoc.FirmaPreparada> pendientes, Map<Long, ResultadoDocumento> resultados) {
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        DocumentoService.DocumentosGuardados guardados;
+        try {
+            guardados = documentoService.GuardarDocumentos(
+                    pendientes.stream().map(FirmarDoc.FirmaPreparada::documento).toList(),
+                    FirmarDoc.blobsReemplazados(pendientes));
+        } catch (RuntimeException e) {
+            // la cuota todavía no se ajustó: basta con borrar los archivos que dejó cada firma
+            for (FirmarDoc.FirmaPreparada firma : pendientes) {
+                firmarDoc.descartarFirma(firma);
+                Long id = firma.documento().getId();
+                resultados.put(id, new ResultadoDocumento(id, Resultado.ERROR, "No se pudo guardar la firma: " + e.getMessage()));
+            }
+            pendientes.clear();
+            return;
+        }
+        for (FirmarDoc.FirmaPreparada firma : pendientes) {
+            Long id = firma.documento().getId();
+            if (guardados.inexistentes().contains(id)) {
+                // eliminado mientras se firmaba: no afecta al resto del lote
+                firmarDoc.descartarFirma(firma);
+                resultados.put(id, new ResultadoDocumento(id, Resultado.NO_ENCONTRADO, "Documento eliminado durante la firma"));
+                continue;
+            }
+            firmarDoc.completarFirma(firma, guardados.blobsSoltados().contains(id));
+            resultados.put(id, new ResultadoDocumento(id, Resultado.FIRMADO, null));
+        }
+        pendientes.clear();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+package cl.veritrust.v1.Service;
+
+import cl.veritrust.v1.Exception.FileStorageException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Migra en línea los archivos del layout plano (raíz de app.upload.dir) al layout fragmentado
+ * ab/cd/&lt;nombre&gt;. Cada archivo se mueve con un rename atómico y {@link FileStorageService}
+ * los encuentra en cualquiera de los dos layouts, así que no requiere detener la aplicación.
+ */
+@Service
+public class MigracionAlmacenamientoService {
+
+    public record ResultadoMigracion(int movidos, int omitidos, boolean pendientes) {}
+
+    // Archivos modificados hace menos de esto pueden estar escribiéndose todavía
+    private static final long ANTIGUEDAD_MINIMA_MS = 60_000;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.storage.migracion.habilitada:false}")
+    private boolean habilitada;
+
+    @Value("${app.storage.migracion.lote:500}")
+    private int lote;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    /**
+     * Mueve hasta {@code maximo} archivos. Retorna cuántos se movieron, cuántos se omitieron
+     * (recientes o ya presentes en destino) y si quedan archivos planos por revisar.
+     */
+    public ResultadoMigracion migrarLote(int maximo) {
+        if (!enCurso.compareAndSet(false, true)) {
+            return new ResultadoMigracion(0, 0, true);
+        }
+        try {
+            Path raiz = fileStorageService.getUploadDir();
+            long limite = System.currentTimeMillis() - ANTIGUEDAD_MINIMA_MS;
+            int movidos = 0;
+            int omitidos = 0;
+            boolean pendientes = false;
+            try (DirectoryStream<Path> archivos = Files.newDirectoryStream(raiz, Files::isRegularFile)) {
+                for (Path plano : archivos) {
+                    if (movidos >= maximo) {
+                        pendientes = true;
+                        break;
+                    }
+                    if (Files.getLastModifiedTime(plano).toMillis() > limite) {
+                        omitidos++;
+                        continue;
+                    }
+                    Path destino = raiz.resolve(FileStorageService.rutaFragmentada(plano.getFileName().toString()));
+                    // ATOMIC_MOVE puede reemplazar el destino: nunca se pisa un archivo existente
+                    if (Files.exists(destino)) {
+                        omitidos++;
+                        continue;
+                    }
+                    Files.createDirectories(destino.getParent());
+                    try {
+                        Files.move(plano, destino, StandardCopyOption.ATOMIC_MOVE);
+                        movidos++;
+                    } catch (NoSuchFileException ex) {
+                        // eliminado mientras se recorría el directorio
+                    }
+                }
+            } catch (IOException ex) {
+                throw new FileStorageException("Error al migrar el almacenamiento", ex);
+            }
+            return new ResultadoMigracion(movidos, omitidos, pendientes);
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.storage.migracion.intervalo-ms:10000}")
+    public void migrarAutomaticamente() {
+        if (habilitada) {
+            migrarLote(lote);
+        }
+    }
+}
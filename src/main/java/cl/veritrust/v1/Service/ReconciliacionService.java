@@ -0,0 +1,286 @@
+package cl.veritrust.v1.Service;
+
+import cl.veritrust.v1.Exception.FileStorageException;
+import cl.veritrust.v1.Repository.ArchivoBlobRepository;
+import cl.veritrust.v1.Repository.DocumentoRepository;
+import cl.veritrust.v1.Repository.SesionCargaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reconciliación entre app.upload.dir y la base de datos, en dos recorridos por lotes:
+ * <ul>
+ *   <li>archivos → BD: el árbol se recorre en streaming y cada lote se consulta con IN contra
+ *       documento, sesion_carga y archivo_blob; lo que nadie referencia es huérfano.</li>
+ *   <li>BD → archivos: documento se pagina por id y se verifica que existan sus archivos; las
+ *       filas sin archivo se reportan (nunca se eliminan).</li>
+ * </ul>
+ * Ninguno de los dos lados se carga completo en memoria; entre lotes se hace una pausa para no
+ * competir con el tráfico normal.
+ */
+@Service
+public class ReconciliacionService {
+
+    public static final String CUARENTENA = ".cuarentena";
+    // cache de conversiones DOCX->PDF (ver ConversionConfig): no son archivos de documentos
+    public static final String CACHE_CONVERSION = ".cache-conversion";
+
+    // Cuántos huérfanos/colgantes se guardan con nombre en el reporte (el total se cuenta igual)
+    private static final int MAX_DETALLE = 1000;
+
+    public record Reporte(Instant inicio, Instant fin, boolean cuarentena,
+                          long archivosRevisados, long huerfanos, long enCuarentena, List<String> detalleHuerfanos,
+                          long filasRevisadas, long filasColgantes, List<String> detalleColgantes) {}
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private DocumentoRepository documentoRepository;
+
+    @Autowired
+    private ArchivoBlobRepository archivoBlobRepository;
+
+    @Autowired
+    private SesionCargaRepository sesionCargaRepository;
+
+    @Value("${app.reconciliador.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${app.reconciliador.cuarentena:false}")
+    private boolean cuarentena;
+
+    @Value("${app.reconciliador.lote:500}")
+    private int lote;
+
+    @Value("${app.reconciliador.pausa-ms:200}")
+    private long pausaMs;
+
+    // Un archivo más nuevo que esto puede pertenecer a una transacción aún no confirmada
+    @Value("${app.reconciliador.antiguedad-minima-ms:3600000}")
+    private long antiguedadMinimaMs;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    private volatile Reporte ultimoReporte;
+
+    @Scheduled(fixedDelayString = "${app.reconciliador.intervalo-ms:21600000}",
+               initialDelayString = "${app.reconciliador.retraso-inicial-ms:600000}")
+    public void reconciliarPeriodicamente() {
+        if (habilitado) {
+            reconciliar();
+        }
+    }
+
+    /**
+     * Ejecuta una reconciliación completa. Retorna null si ya hay una en curso.
+     */
+    public Reporte reconciliar() {
+        if (!enCurso.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            Acumulador acc = new Acumulador();
+            revisarArchivos(acc);
+            revisarFilas(acc);
+            ultimoReporte = acc.reporte(cuarentena);
+            return ultimoReporte;
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    public boolean isEnCurso() {
+        return enCurso.get();
+    }
+
+    public Reporte getUltimoReporte() {
+        return ultimoReporte;
+    }
+
+    private void revisarArchivos(Acumulador acc) {
+        Path raiz = fileStorageService.getUploadDir();
+        long limite = System.currentTimeMillis() - antiguedadMinimaMs;
+        List<String> pendientes = new ArrayList<>(lote);
+        try {
+            Files.walkFileTree(raiz, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return dir.equals(raiz.resolve(CUARENTENA)) || dir.equals(raiz.resolve(CACHE_CONVERSION))
+                            ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path archivo, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && attrs.lastModifiedTime().toMillis() < limite) {
+                        pendientes.add(raiz.relativize(archivo).toString().replace('\\', '/'));
+                        if (pendientes.size() >= lote) {
+                            procesarLoteArchivos(pendientes, acc);
+                            pendientes.clear();
+                            pausa();
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path archivo, IOException ex) {
+                    // eliminado durante el recorrido
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ex) {
+            throw new FileStorageException("Error al recorrer el directorio de uploads", ex);
+        }
+        if (!pendientes.isEmpty()) {
+            procesarLoteArchivos(pendientes, acc);
+        }
+    }
+
+    /**
+     * Clasifica el lote por tipo de ruta y consulta a la BD sólo las claves de ese lote.
+     */
+    private void procesarLoteArchivos(List<String> rutas, Acumulador acc) {
+        Map<String, String> blobs = new HashMap<>();
+        Map<String, String> porRuta = new HashMap<>();
+        Map<String, String> porNombre = new HashMap<>();
+        List<String> huerfanos = new ArrayList<>();
+
+        for (String ruta : rutas) {
+            acc.archivosRevisados++;
+            if (ruta.startsWith("tmp/")) {
+                huerfanos.add(ruta);
+            } else if (ruta.startsWith("blobs/")) {
+                blobs.put(ruta.substring(ruta.lastIndexOf('/') + 1), ruta);
+            } else if (ruta.startsWith("documentos/")) {
+                porRuta.put(ruta, ruta);
+            } else {
+                // raíz (layout plano) o ab/cd/<nombre>
+                porNombre.put(ruta.substring(ruta.lastIndexOf('/') + 1), ruta);
+            }
+        }
+
+        if (!blobs.isEmpty()) {
+            archivoBlobRepository.findHashesEn(blobs.keySet()).forEach(blobs::remove);
+            huerfanos.addAll(blobs.values());
+        }
+        if (!porRuta.isEmpty()) {
+            documentoRepository.findRutasAlmacenamientoEn(porRuta.keySet()).forEach(porRuta::remove);
+            huerfanos.addAll(porRuta.values());
+        }
+        if (!porNombre.isEmpty()) {
+            documentoRepository.findNombresAlmacenadosEn(porNombre.keySet()).forEach(porNombre::remove);
+            if (!porNombre.isEmpty()) {
+                documentoRepository.findNombresFirmadosEn(porNombre.keySet()).forEach(porNombre::remove);
+            }
+            if (!porNombre.isEmpty()) {
+                sesionCargaRepository.findNombresAlmacenadosEn(porNombre.keySet()).forEach(porNombre::remove);
+            }
+            huerfanos.addAll(porNombre.values());
+        }
+
+        for (String huerfano : huerfanos) {
+            acc.huerfano(huerfano);
+            if (cuarentena && moverACuarentena(huerfano)) {
+                acc.enCuarentena++;
+            }
+        }
+    }
+
+    private boolean moverACuarentena(String ruta) {
+        Path raiz = fileStorageService.getUploadDir();
+        Path destino = raiz.resolve(CUARENTENA).resolve(ruta);
+        try {
+            Files.createDirectories(destino.getParent());
+            Files.move(raiz.resolve(ruta), destino, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private void revisarFilas(Acumulador acc) {
+        long desde = 0;
+        while (true) {
+            List<DocumentoRepository.ArchivosDocumento> pagina =
+                    documentoRepository.findArchivosDesde(desde, PageRequest.of(0, lote));
+            for (DocumentoRepository.ArchivosDocumento d : pagina) {
+                acc.filasRevisadas++;
+                List<String> faltantes = new ArrayList<>(2);
+                if (d.getRutaAlmacenamiento() != null) {
+                    if (!existe(d.getRutaAlmacenamiento())) faltantes.add(d.getRutaAlmacenamiento());
+                } else if (d.getRutaBlob() != null) {
+                    if (!existe(d.getRutaBlob())) faltantes.add(d.getRutaBlob());
+                } else if (!existe(d.getNombreAlmacenado())) {
+                    faltantes.add(d.getNombreAlmacenado());
+                }
+                if (d.getNombreFirmado() != null && d.getRutaAlmacenamiento() == null && !existe(d.getNombreFirmado())) {
+                    faltantes.add(d.getNombreFirmado());
+                }
+                if (!faltantes.isEmpty()) {
+                    acc.colgante("documento " + d.getId() + ": " + String.join(", ", faltantes));
+                }
+                desde = d.getId();
+            }
+            if (pagina.size() < lote) {
+                return;
+            }
+            pausa();
+        }
+    }
+
+    private boolean existe(String nombre) {
+        try {
+            return Files.exists(fileStorageService.resolver(nombre));
+        } catch (FileStorageException ex) {
+            // ruta fuera de app.upload.dir: la fila apunta a algo que no puede existir
+            return false;
+        }
+    }
+
+    private void pausa() {
+        if (pausaMs <= 0) return;
+        try {
+            Thread.sleep(pausaMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Acumulador {
+        private final Instant inicio = Instant.now();
+        long archivosRevisados;
+        long huerfanos;
+        long enCuarentena;
+        long filasRevisadas;
+        long filasColgantes;
+        final List<String> detalleHuerfanos = new ArrayList<>();
+        final List<String> detalleColgantes = new ArrayList<>();
+
+        void huerfano(String ruta) {
+            huerfanos++;
+            if (detalleHuerfanos.size() < MAX_DETALLE) detalleHuerfanos.add(ruta);
+        }
+
+        void colgante(String detalle) {
+            filasColgantes++;
+            if (detalleColgantes.size() < MAX_DETALLE) detalleColgantes.add(detalle);
+        }
+
+        Reporte reporte(boolean cuarentena) {
+            return new Reporte(inicio, Instant.now(), cuarentena,
+                    archivosRevisados, huerfanos, enCuarentena, List.copyOf(detalleHuerfanos),
+                    filasRevisadas, filasColgantes, List.copyOf(detalleColgantes));
+        }
+    }
+}
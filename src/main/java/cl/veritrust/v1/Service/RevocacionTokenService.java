@@ -0,0 +1,132 @@
+package cl.veritrust.v1.Service;
+
+import cl.veritrust.v1.Model.TokenRevocado;
+import cl.veritrust.v1.Repository.TokenRevocadoRepository;
+import cl.veritrust.v1.Security.JwtUtil;
+import cl.veritrust.v1.Security.TokenClaims;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lista de revocación de JWT. Se consulta en memoria en cada request (sin acceso a BD) y se
+ * persiste en la tabla token_revocado para recargarla al iniciar la aplicación.
+ */
+@Service
+@Transactional
+public class RevocacionTokenService {
+
+    @Autowired
+    private TokenRevocadoRepository tokenRevocadoRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    // jti -> expiración del token (epoch ms)
+    private final Map<String, Long> tokensRevocados = new ConcurrentHashMap<>();
+
+    // usuarioId -> revocación de todos sus tokens emitidos hasta "desde". "desde" es además la
+    // versión que llevan los tokens emitidos después (claim ver): crece estrictamente por usuario
+    private final Map<Long, RevocacionUsuario> usuariosRevocados = new ConcurrentHashMap<>();
+
+    private record RevocacionUsuario(long desde, long expira) {}
+
+    @PostConstruct
+    public void cargar() {
+        for (TokenRevocado t : tokenRevocadoRepository.findByExpiraEnAfter(LocalDateTime.now())) {
+            registrar(t);
+        }
+    }
+
+    public void revocarToken(TokenClaims claims) {
+        if (claims == null || claims.id() == null) return;
+        TokenRevocado t = new TokenRevocado();
+        t.setJti(claims.id());
+        t.setUsuarioId(claims.usuarioId());
+        t.setRevocadoEn(LocalDateTime.now());
+        t.setExpiraEn(aFecha(claims.expiration().toEpochMilli()));
+        registrar(tokenRevocadoRepository.save(t));
+    }
+
+    public void revocarUsuario(Long usuarioId) {
+        if (usuarioId == null) return;
+        long ahora = System.currentTimeMillis();
+        long desde;
+        synchronized (usuariosRevocados) {
+            // dos revocaciones en el mismo milisegundo también deben dar versiones distintas
+            RevocacionUsuario actual = usuariosRevocados.get(usuarioId);
+            desde = actual != null ? Math.max(ahora, actual.desde() + 1) : ahora;
+            usuariosRevocados.merge(usuarioId, new RevocacionUsuario(desde, desde + jwtUtil.getExpirationMillis()),
+                    (a, n) -> n.desde() > a.desde() ? n : a);
+        }
+        TokenRevocado t = new TokenRevocado();
+        t.setUsuarioId(usuarioId);
+        t.setRevocadoEn(aFecha(desde));
+        // Ningún token emitido antes de ahora puede seguir vigente después de este instante
+        t.setExpiraEn(aFecha(desde + jwtUtil.getExpirationMillis()));
+        registrar(tokenRevocadoRepository.save(t));
+    }
+
+    /** Versión que debe llevar un token emitido ahora para el usuario (claim ver). */
+    public long versionTokens(Long usuarioId) {
+        RevocacionUsuario r = usuarioId != null ? usuariosRevocados.get(usuarioId) : null;
+        return r != null ? r.desde() : 0L;
+    }
+
+    public boolean estaRevocado(TokenClaims claims) {
+        if (claims.id() != null && tokensRevocados.containsKey(claims.id())) {
+            return true;
+        }
+        if (claims.usuarioId() == null) {
+            return false;
+        }
+        RevocacionUsuario r = usuariosRevocados.get(claims.usuarioId());
+        if (r == null) {
+            return false;
+        }
+        if (claims.version() != null) {
+            // el token conoce la última revocación vigente al emitirse: sólo cae si hubo una posterior
+            return claims.version() < r.desde();
+        }
+        if (claims.issuedAt() != null) {
+            // tokens sin ver, emitidos antes de existir el claim: iat sólo tiene precisión de segundos
+            return claims.issuedAt().toEpochMilli() <= r.desde();
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.jwt.revocation-purge-ms:600000}")
+    public void purgarExpirados() {
+        long ahora = System.currentTimeMillis();
+        tokensRevocados.values().removeIf(expira -> expira < ahora);
+        usuariosRevocados.values().removeIf(r -> r.expira() < ahora);
+        tokenRevocadoRepository.eliminarExpirados(aFecha(ahora));
+    }
+
+    private void registrar(TokenRevocado t) {
+        long expira = aMillis(t.getExpiraEn());
+        if (t.getJti() != null) {
+            tokensRevocados.put(t.getJti(), expira);
+        } else if (t.getUsuarioId() != null) {
+            RevocacionUsuario nueva = new RevocacionUsuario(aMillis(t.getRevocadoEn()), expira);
+            usuariosRevocados.merge(t.getUsuarioId(), nueva,
+                    (actual, n) -> n.desde() > actual.desde() ? n : actual);
+        }
+    }
+
+    private static LocalDateTime aFecha(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static long aMillis(LocalDateTime fecha) {
+        return fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -2,22 +2,27 @@ package cl.veritrust.v1.Service;
 
 import cl.veritrust.v1.Exception.ResourceNotFoundException;
 import cl.veritrust.v1.Model.Usuario;
+import cl.veritrust.v1.Repository.DocumentoRepository;
 import cl.veritrust.v1.Repository.UsuarioRepository;
+import cl.veritrust.v1.Security.CredencialesExecutor;
+import cl.veritrust.v1.Security.PrincipalCache;
+import cl.veritrust.v1.Security.UsuarioPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 @Service
 @Transactional
-public class UsuarioService implements UserDetailsService {
+public class UsuarioService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UsuarioRepository usuarioRepository;
@@ -25,6 +30,21 @@ public class UsuarioService implements UserDetailsService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private CuotaAlmacenamientoService cuotaAlmacenamientoService;
+
+    @Autowired
+    private RevocacionTokenService revocacionTokenService;
+
+    @Autowired
+    private CredencialesExecutor credencialesExecutor;
+
+    @Autowired
+    private DocumentoRepository documentoRepository;
+
     @Transactional(readOnly = true)
     public List<Usuario> ObtenerUsuarios() {
         return usuarioRepository.findAll();
@@ -46,12 +66,16 @@ public class UsuarioService implements UserDetailsService {
         if (usuario.getRol() == null) {
             usuario.setRol("user");
         }
-        usuario.setContraseña(passwordEncoder.encode(usuario.getContraseña()));
+        String contraseña = usuario.getContraseña();
+        usuario.setContraseña(credencialesExecutor.ejecutar(() -> passwordEncoder.encode(contraseña)));
         return usuarioRepository.save(usuario);
     }
 
     public Usuario ActualizarUsuario(Long id, Usuario detallesUsuario) {
         Usuario usuario = ObtenerUsuarioPorId(id);
+        principalCache.invalidar(usuario.getRut());
+        String rutAnterior = usuario.getRut();
+        String rolAnterior = usuario.getRol();
         usuario.setRut(detallesUsuario.getRut());
         usuario.setNombre(detallesUsuario.getNombre());
         usuario.setTelefono(detallesUsuario.getTelefono());
@@ -59,18 +83,43 @@ public class UsuarioService implements UserDetailsService {
         usuario.setFechaNac(detallesUsuario.getFechaNac());
         
         if (detallesUsuario.getContraseña() != null && !detallesUsuario.getContraseña().isEmpty()) {
-            usuario.setContraseña(passwordEncoder.encode(detallesUsuario.getContraseña()));
+            String contraseña = detallesUsuario.getContraseña();
+            usuario.setContraseña(credencialesExecutor.ejecutar(() -> passwordEncoder.encode(contraseña)));
         }
         
         if (detallesUsuario.getRol() != null) {
             usuario.setRol(detallesUsuario.getRol());
         }
+        principalCache.invalidar(usuario.getRut());
+
+        // Los tokens emitidos llevan rut y rol: si cambian, los anteriores dejan de ser válidos
+        if (!Objects.equals(usuario.getRut(), rutAnterior) || !Objects.equals(usuario.getRol(), rolAnterior)) {
+            revocacionTokenService.revocarUsuario(usuario.getId());
+        }
         return usuarioRepository.save(usuario);
     }
 
-    public void EliminarUsuario(Long id) {
+    /**
+     * Elimina el usuario y, en cascada, sus documentos. Devuelve los hashes de blob cuya
+     * referencia soltó (uno por documento): quien llama los libera una vez confirmado el borrado.
+     */
+    public List<String> EliminarUsuario(Long id) {
         Usuario usuario = ObtenerUsuarioPorId(id);
+        principalCache.invalidar(usuario.getRut());
+        revocacionTokenService.revocarUsuario(usuario.getId());
+
+        // La cascada de la base borra los documentos sin descontar sus blobs: antes se sueltan,
+        // con el mismo UPDATE condicional que la firma y la eliminación de documentos
+        List<String> blobsSoltados = new ArrayList<>();
+        for (DocumentoRepository.BlobDocumento d : documentoRepository.findBlobsPorUsuario(usuario.getId())) {
+            if (documentoRepository.soltarBlob(d.getId(), d.getHash()) == 1) {
+                blobsSoltados.add(d.getHash());
+            }
+        }
         usuarioRepository.delete(usuario);
+        // sus documentos se eliminan en cascada
+        cuotaAlmacenamientoService.olvidar(usuario.getId());
+        return blobsSoltados;
     }
 
     @Override
@@ -79,11 +128,23 @@ public class UsuarioService implements UserDetailsService {
         if (u == null) {
             throw new UsernameNotFoundException("Usuario no encontrado con RUT: " + rut);
         }
-        return new org.springframework.security.core.userdetails.User(
-                u.getRut(), 
-                u.getContraseña(), 
-                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + u.getRol()))
-        );
+        return UsuarioPrincipal.desde(u);
+    }
+
+    /**
+     * Invocado por DaoAuthenticationProvider tras un login exitoso cuando el hash almacenado
+     * usa un algoritmo o costo inferior al configurado; recibe la contraseña ya re-hasheada.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        Usuario u = ObtenerUsuarioPorRut(user.getUsername());
+        if (u == null) {
+            return user;
+        }
+        u.setContraseña(newPassword);
+        usuarioRepository.save(u);
+        principalCache.invalidar(u.getRut());
+        return UsuarioPrincipal.desde(u);
     }
 
     public Usuario Login(String rut, String contraseña) {